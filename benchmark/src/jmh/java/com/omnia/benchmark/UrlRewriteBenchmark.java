@@ -0,0 +1,87 @@
+package com.omnia.benchmark;
+
+import com.omnia.sdk.OmniaSDK;
+import com.omnia.transport.OmniaEndpoint;
+import org.openjdk.jmh.annotations.*;
+import org.opensearch.client.opensearch.core.GetRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rewriting request paths from logical indexes to communes.
+ * Run with the GC profiler ({@code -prof gc}) and compare gc.alloc.rate.norm of the
+ * omnia benchmarks with their delegate baselines: the difference is what OmniaEndpoint
+ * allocates per request on top of the path the client builds anyway.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlRewriteBenchmark {
+
+    private SearchRequest search;
+    private SearchRequest multiSearch;
+    private GetRequest get;
+    private OmniaSDK sdk;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        search = SearchRequest.of(s -> s.index("logical-index-1"));
+        multiSearch = SearchRequest.of(s -> s.index("logical-index-1", "logical-index-2", "logical-index-3"));
+        get = GetRequest.of(g -> g.index("logical-index-1").id("doc-1"));
+
+        // Resolutions are served from a prepared map, so only the rewrite is measured
+        Map<String, String> communes = new LinkedHashMap<>();
+        communes.put("logical-index-1", "commune_a");
+        communes.put("logical-index-2", "commune_b");
+        communes.put("logical-index-3", "commune_a");
+        Map<String, String> single = Map.of("logical-index-1", "commune_a");
+        sdk = new OmniaSDK() {
+            @Override
+            public String transformIndexId(String indexId) {
+                return communes.get(indexId);
+            }
+
+            @Override
+            public Map<String, String> transformIndexIds(Collection<String> indexIds) {
+                return indexIds.size() == 1 ? single : communes;
+            }
+
+            @Override
+            public String getFilterField() {
+                return "real_index";
+            }
+        };
+    }
+
+    @Benchmark
+    public String delegateSearchUrl() {
+        return SearchRequest._ENDPOINT.requestUrl(search);
+    }
+
+    @Benchmark
+    public String omniaSearchUrl() {
+        return new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk).requestUrl(search);
+    }
+
+    @Benchmark
+    public String delegateGetUrl() {
+        return GetRequest._ENDPOINT.requestUrl(get);
+    }
+
+    @Benchmark
+    public String omniaGetUrl() {
+        return new OmniaEndpoint<>(GetRequest._ENDPOINT, sdk).requestUrl(get);
+    }
+
+    @Benchmark
+    public String omniaMultiIndexSearchUrl() {
+        return new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk).requestUrl(multiSearch);
+    }
+}
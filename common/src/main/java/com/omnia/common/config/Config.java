@@ -1,10 +1,56 @@
 package com.omnia.common.config;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Config {
     private Boolean preferLocal = true;
     private String configTableName = "omnia_config";
     private String featureName = "omnia_id";
     private long threshold = 10000;
+    private int routingCacheMaxEntries = 100000;
+    private long routingCacheTtlSeconds = 300;
+    private boolean listenMappingChanges = true;
+    private String snapshotPath = null;
+    private long snapshotIntervalSeconds = 300;
+    private long snapshotMaxWarmAgeSeconds = 3600;
+    private int registrationBatchSize = 500;
+    private long registrationLingerMillis = 5;
+    private boolean awaitRegistration = false;
+    private String placementMode = "database";
+    private List<String> hashRing = new ArrayList<>();
+    private long overrideRefreshSeconds = 60;
+    private long placementRefreshSeconds = 60;
+    private boolean writeCoalescing = false;
+    private int writeCoalescingMaxOperations = 1000;
+    private long writeCoalescingMaxBytes = 5 * 1024 * 1024;
+    private long writeCoalescingLingerMillis = 5;
+    private boolean searchCoalescing = false;
+    private int searchCoalescingMaxSearches = 100;
+    private long searchCoalescingLingerMillis = 2;
+    private boolean tenantRouting = false;
+    private boolean communeIndexSorting = true;
+    private Integer communeShards = null;
+    private Integer communeReplicas = null;
+    private String communeRefreshInterval = null;
+    private String communeCodec = null;
+    private long deletionRequestsPerSecond = 500;
+    private long deletionSlices = 1;
+    private long deletionPollSeconds = 10;
+    private long indexNamesRefreshSeconds = 60;
+    private boolean admissionControl = false;
+    private int admissionInitialLimit = 20;
+    private int admissionMinLimit = 2;
+    private int admissionMaxLimit = 200;
+    private int admissionMaxQueued = 100;
+    private long admissionLatencyThresholdMillis = 2000;
+    private double admissionBackoffRatio = 0.9;
+    private boolean rateLimiting = false;
+    private double rateLimitReadsPerSecond = 0;
+    private double rateLimitWritesPerSecond = 0;
+    private double rateLimitBurstSeconds = 1;
+    private int rateLimitMaxTenants = 100000;
+    private long rateLimitRefreshSeconds = 60;
 
     public long getThreshold() { 
         return threshold; 
@@ -37,4 +83,348 @@ public class Config {
     public void setFeatureName(String featureName) {
         this.featureName = featureName;
     }
+
+    public int getRoutingCacheMaxEntries() {
+        return routingCacheMaxEntries;
+    }
+
+    public void setRoutingCacheMaxEntries(int routingCacheMaxEntries) {
+        this.routingCacheMaxEntries = routingCacheMaxEntries;
+    }
+
+    public long getRoutingCacheTtlSeconds() {
+        return routingCacheTtlSeconds;
+    }
+
+    public void setRoutingCacheTtlSeconds(long routingCacheTtlSeconds) {
+        this.routingCacheTtlSeconds = routingCacheTtlSeconds;
+    }
+
+    public boolean getListenMappingChanges() {
+        return listenMappingChanges;
+    }
+
+    public void setListenMappingChanges(boolean listenMappingChanges) {
+        this.listenMappingChanges = listenMappingChanges;
+    }
+
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public void setSnapshotPath(String snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public long getSnapshotMaxWarmAgeSeconds() {
+        return snapshotMaxWarmAgeSeconds;
+    }
+
+    public void setSnapshotMaxWarmAgeSeconds(long snapshotMaxWarmAgeSeconds) {
+        this.snapshotMaxWarmAgeSeconds = snapshotMaxWarmAgeSeconds;
+    }
+
+    public int getRegistrationBatchSize() {
+        return registrationBatchSize;
+    }
+
+    public void setRegistrationBatchSize(int registrationBatchSize) {
+        this.registrationBatchSize = registrationBatchSize;
+    }
+
+    public long getRegistrationLingerMillis() {
+        return registrationLingerMillis;
+    }
+
+    public void setRegistrationLingerMillis(long registrationLingerMillis) {
+        this.registrationLingerMillis = registrationLingerMillis;
+    }
+
+    public boolean getAwaitRegistration() {
+        return awaitRegistration;
+    }
+
+    public void setAwaitRegistration(boolean awaitRegistration) {
+        this.awaitRegistration = awaitRegistration;
+    }
+
+    public String getPlacementMode() {
+        return placementMode;
+    }
+
+    public void setPlacementMode(String placementMode) {
+        this.placementMode = placementMode;
+    }
+
+    public List<String> getHashRing() {
+        return hashRing;
+    }
+
+    public void setHashRing(List<String> hashRing) {
+        this.hashRing = hashRing;
+    }
+
+    public long getOverrideRefreshSeconds() {
+        return overrideRefreshSeconds;
+    }
+
+    public void setOverrideRefreshSeconds(long overrideRefreshSeconds) {
+        this.overrideRefreshSeconds = overrideRefreshSeconds;
+    }
+
+    public long getPlacementRefreshSeconds() {
+        return placementRefreshSeconds;
+    }
+
+    public void setPlacementRefreshSeconds(long placementRefreshSeconds) {
+        this.placementRefreshSeconds = placementRefreshSeconds;
+    }
+
+    public boolean getWriteCoalescing() {
+        return writeCoalescing;
+    }
+
+    public void setWriteCoalescing(boolean writeCoalescing) {
+        this.writeCoalescing = writeCoalescing;
+    }
+
+    public int getWriteCoalescingMaxOperations() {
+        return writeCoalescingMaxOperations;
+    }
+
+    public void setWriteCoalescingMaxOperations(int writeCoalescingMaxOperations) {
+        this.writeCoalescingMaxOperations = writeCoalescingMaxOperations;
+    }
+
+    public long getWriteCoalescingMaxBytes() {
+        return writeCoalescingMaxBytes;
+    }
+
+    public void setWriteCoalescingMaxBytes(long writeCoalescingMaxBytes) {
+        this.writeCoalescingMaxBytes = writeCoalescingMaxBytes;
+    }
+
+    public long getWriteCoalescingLingerMillis() {
+        return writeCoalescingLingerMillis;
+    }
+
+    public void setWriteCoalescingLingerMillis(long writeCoalescingLingerMillis) {
+        this.writeCoalescingLingerMillis = writeCoalescingLingerMillis;
+    }
+
+    public boolean getSearchCoalescing() {
+        return searchCoalescing;
+    }
+
+    public void setSearchCoalescing(boolean searchCoalescing) {
+        this.searchCoalescing = searchCoalescing;
+    }
+
+    public int getSearchCoalescingMaxSearches() {
+        return searchCoalescingMaxSearches;
+    }
+
+    public void setSearchCoalescingMaxSearches(int searchCoalescingMaxSearches) {
+        this.searchCoalescingMaxSearches = searchCoalescingMaxSearches;
+    }
+
+    public long getSearchCoalescingLingerMillis() {
+        return searchCoalescingLingerMillis;
+    }
+
+    public void setSearchCoalescingLingerMillis(long searchCoalescingLingerMillis) {
+        this.searchCoalescingLingerMillis = searchCoalescingLingerMillis;
+    }
+
+    public boolean getTenantRouting() {
+        return tenantRouting;
+    }
+
+    public void setTenantRouting(boolean tenantRouting) {
+        this.tenantRouting = tenantRouting;
+    }
+
+    public boolean getCommuneIndexSorting() {
+        return communeIndexSorting;
+    }
+
+    public void setCommuneIndexSorting(boolean communeIndexSorting) {
+        this.communeIndexSorting = communeIndexSorting;
+    }
+
+    public Integer getCommuneShards() {
+        return communeShards;
+    }
+
+    public void setCommuneShards(Integer communeShards) {
+        this.communeShards = communeShards;
+    }
+
+    public Integer getCommuneReplicas() {
+        return communeReplicas;
+    }
+
+    public void setCommuneReplicas(Integer communeReplicas) {
+        this.communeReplicas = communeReplicas;
+    }
+
+    public String getCommuneRefreshInterval() {
+        return communeRefreshInterval;
+    }
+
+    public void setCommuneRefreshInterval(String communeRefreshInterval) {
+        this.communeRefreshInterval = communeRefreshInterval;
+    }
+
+    public String getCommuneCodec() {
+        return communeCodec;
+    }
+
+    public void setCommuneCodec(String communeCodec) {
+        this.communeCodec = communeCodec;
+    }
+
+    public long getDeletionRequestsPerSecond() {
+        return deletionRequestsPerSecond;
+    }
+
+    public void setDeletionRequestsPerSecond(long deletionRequestsPerSecond) {
+        this.deletionRequestsPerSecond = deletionRequestsPerSecond;
+    }
+
+    public long getDeletionSlices() {
+        return deletionSlices;
+    }
+
+    public void setDeletionSlices(long deletionSlices) {
+        this.deletionSlices = deletionSlices;
+    }
+
+    public long getDeletionPollSeconds() {
+        return deletionPollSeconds;
+    }
+
+    public void setDeletionPollSeconds(long deletionPollSeconds) {
+        this.deletionPollSeconds = deletionPollSeconds;
+    }
+
+    public long getIndexNamesRefreshSeconds() {
+        return indexNamesRefreshSeconds;
+    }
+
+    public void setIndexNamesRefreshSeconds(long indexNamesRefreshSeconds) {
+        this.indexNamesRefreshSeconds = indexNamesRefreshSeconds;
+    }
+
+    public boolean getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public void setAdmissionControl(boolean admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    public int getAdmissionInitialLimit() {
+        return admissionInitialLimit;
+    }
+
+    public void setAdmissionInitialLimit(int admissionInitialLimit) {
+        this.admissionInitialLimit = admissionInitialLimit;
+    }
+
+    public int getAdmissionMinLimit() {
+        return admissionMinLimit;
+    }
+
+    public void setAdmissionMinLimit(int admissionMinLimit) {
+        this.admissionMinLimit = admissionMinLimit;
+    }
+
+    public int getAdmissionMaxLimit() {
+        return admissionMaxLimit;
+    }
+
+    public void setAdmissionMaxLimit(int admissionMaxLimit) {
+        this.admissionMaxLimit = admissionMaxLimit;
+    }
+
+    public int getAdmissionMaxQueued() {
+        return admissionMaxQueued;
+    }
+
+    public void setAdmissionMaxQueued(int admissionMaxQueued) {
+        this.admissionMaxQueued = admissionMaxQueued;
+    }
+
+    public long getAdmissionLatencyThresholdMillis() {
+        return admissionLatencyThresholdMillis;
+    }
+
+    public void setAdmissionLatencyThresholdMillis(long admissionLatencyThresholdMillis) {
+        this.admissionLatencyThresholdMillis = admissionLatencyThresholdMillis;
+    }
+
+    public double getAdmissionBackoffRatio() {
+        return admissionBackoffRatio;
+    }
+
+    public void setAdmissionBackoffRatio(double admissionBackoffRatio) {
+        this.admissionBackoffRatio = admissionBackoffRatio;
+    }
+
+    public boolean getRateLimiting() {
+        return rateLimiting;
+    }
+
+    public void setRateLimiting(boolean rateLimiting) {
+        this.rateLimiting = rateLimiting;
+    }
+
+    public double getRateLimitReadsPerSecond() {
+        return rateLimitReadsPerSecond;
+    }
+
+    public void setRateLimitReadsPerSecond(double rateLimitReadsPerSecond) {
+        this.rateLimitReadsPerSecond = rateLimitReadsPerSecond;
+    }
+
+    public double getRateLimitWritesPerSecond() {
+        return rateLimitWritesPerSecond;
+    }
+
+    public void setRateLimitWritesPerSecond(double rateLimitWritesPerSecond) {
+        this.rateLimitWritesPerSecond = rateLimitWritesPerSecond;
+    }
+
+    public double getRateLimitBurstSeconds() {
+        return rateLimitBurstSeconds;
+    }
+
+    public void setRateLimitBurstSeconds(double rateLimitBurstSeconds) {
+        this.rateLimitBurstSeconds = rateLimitBurstSeconds;
+    }
+
+    public int getRateLimitMaxTenants() {
+        return rateLimitMaxTenants;
+    }
+
+    public void setRateLimitMaxTenants(int rateLimitMaxTenants) {
+        this.rateLimitMaxTenants = rateLimitMaxTenants;
+    }
+
+    public long getRateLimitRefreshSeconds() {
+        return rateLimitRefreshSeconds;
+    }
+
+    public void setRateLimitRefreshSeconds(long rateLimitRefreshSeconds) {
+        this.rateLimitRefreshSeconds = rateLimitRefreshSeconds;
+    }
 }
@@ -5,8 +5,43 @@ CREATE TABLE INDEX_TO_COMMUNE
 );
 
 
+-- Deleted logical indexes whose documents are still being removed from the commune.
+-- A pending tombstone (completed_at is null) hides the index from reads and re-creation.
+-- The client removing the documents holds a lease on the tombstone and renews it while it
+-- runs, tombstones with an expired lease are taken over by another client.
+CREATE TABLE INDEX_TOMBSTONE
+(
+    "index"        VARCHAR PRIMARY KEY,
+    "commune"      VARCHAR NOT NULL,
+    "task_id"      VARCHAR,
+    "deleted_at"   TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    "completed_at" TIMESTAMP,
+    "lease_owner"  VARCHAR,
+    "lease_until"  TIMESTAMP
+);
+
+
 CREATE TABLE OMNIA_CONFIG
 (
     "key"   VARCHAR PRIMARY KEY,
     "value" VARCHAR
-);
\ No newline at end of file
+);
+
+/* [jooq ignore start] */
+-- Publishes every mapping change, so that SDK clients can evict cached resolutions.
+-- Payload is the index for deletes and "index\ncommune" for inserts and updates.
+CREATE OR REPLACE FUNCTION notify_index_to_commune() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        PERFORM pg_notify('omnia_index_to_commune', OLD."index");
+    ELSE
+        PERFORM pg_notify('omnia_index_to_commune', NEW."index" || E'\n' || NEW."commune");
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER index_to_commune_notify
+    AFTER INSERT OR UPDATE OR DELETE ON INDEX_TO_COMMUNE
+    FOR EACH ROW EXECUTE FUNCTION notify_index_to_commune();
+/* [jooq ignore stop] */
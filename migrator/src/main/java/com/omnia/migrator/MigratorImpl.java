@@ -4,6 +4,7 @@ import com.omnia.common.config.AppConfig;
 import com.omnia.common.config.OpenSearch;
 import com.omnia.common.config.db.Database;
 import com.omnia.common.config.db.PostgresqlParams;
+import com.omnia.sdk.CommuneTemplate;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.apache.http.HttpHost;
@@ -20,13 +21,15 @@ import org.opensearch.client.json.jackson.JacksonJsonpMapper;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.FieldValue;
 import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.aggregations.CompositeAggregate;
+import org.opensearch.client.opensearch._types.aggregations.CompositeAggregationSource;
+import org.opensearch.client.opensearch._types.aggregations.CompositeBucket;
 import org.opensearch.client.opensearch.cat.IndicesResponse;
 import org.opensearch.client.opensearch.cat.indices.IndicesRecord;
 import org.opensearch.client.opensearch.core.*;
 import org.opensearch.client.opensearch.core.bulk.BulkOperation;
 import org.opensearch.client.opensearch.core.bulk.IndexOperation;
 import org.opensearch.client.opensearch.core.search.Hit;
-import org.opensearch.client.opensearch.indices.CreateIndexRequest;
 import org.opensearch.client.transport.OpenSearchTransport;
 import org.opensearch.client.transport.rest_client.RestClientTransport;
 import org.slf4j.Logger;
@@ -43,6 +46,7 @@ import java.util.stream.Collectors;
 
 public class MigratorImpl implements Migrator {
     private static final int MAX_DOCUMENTS_PER_COMMUNE = 1000;
+    private static final int INDEXES_PAGE_SIZE = 1000;
     private static final int HIKARI_MAXIMUM_POOL_SIZE = 10;
     private static final int HIKARI_MINIMUM_IDLE = 2;
     private static final int HIKARI_CONNECTION_TIMEOUT = 30000;
@@ -173,7 +177,7 @@ public class MigratorImpl implements Migrator {
         try {
             logger.info("Transferring index {} from commune {} to {}", indexId, from, to);
 
-            List<Map<String, Object>> documents = getDocumentsForIndex(from, indexId);
+            List<Hit<Map<String, Object>>> documents = getDocumentsForIndex(from, indexId);
 
             if (documents.isEmpty()) {
                 logger.info("No documents found for index {} in commune {}", indexId, from);
@@ -199,17 +203,7 @@ public class MigratorImpl implements Migrator {
             String communeId = "commune_" + UUID.randomUUID().toString().replace("-", "");
 
             // Create the commune index in OpenSearch
-            CreateIndexRequest request = CreateIndexRequest.of(builder -> builder
-                    .index(communeId)
-                    .mappings(mappingBuilder -> mappingBuilder
-                            .properties("real_index", propertyBuilder -> propertyBuilder
-                                    .keyword(keywordBuilder -> keywordBuilder))
-                            .properties(config.getConfig().getFeatureName(), propertyBuilder -> propertyBuilder
-                                    .keyword(keywordBuilder -> keywordBuilder))
-                    )
-            );
-
-            openSearchClient.indices().create(request);
+            openSearchClient.indices().create(CommuneTemplate.of(communeId, config.getConfig()));
 
             logger.info("Created new commune: {}", communeId);
             return new CommuneId(communeId);
@@ -278,7 +272,11 @@ public class MigratorImpl implements Migrator {
         }
     }
 
-    private List<IndexId> getIndexesInCommune(CommuneId communeId) {
+    private List<IndexId> getIndexesInCommune(CommuneId communeId) throws IOException {
+        if ("hash".equalsIgnoreCase(config.getConfig().getPlacementMode())) {
+            // Indexes placed by hashing are not registered in the database, find them by their documents
+            return getIndexesFromDocuments(communeId);
+        }
         try (Connection connection = dataSource.getConnection()) {
             DSLContext context = DSL.using(connection, SQLDialect.POSTGRES);
 
@@ -293,6 +291,41 @@ public class MigratorImpl implements Migrator {
         }
     }
 
+    private List<IndexId> getIndexesFromDocuments(CommuneId communeId) throws IOException {
+        // A composite aggregation pages through every index of the commune, a terms aggregation stops at its size
+        List<IndexId> indexes = new ArrayList<>();
+        Map<String, String> after = null;
+        while (true) {
+            Map<String, String> afterKey = after;
+            SearchRequest request = SearchRequest.of(builder -> builder
+                    .index(communeId.value())
+                    .size(0)
+                    .aggregations("indexes", aggregationBuilder -> aggregationBuilder
+                            .composite(compositeBuilder -> {
+                                compositeBuilder
+                                        .size(INDEXES_PAGE_SIZE)
+                                        .sources(List.of(Map.of("index", CompositeAggregationSource.of(sourceBuilder -> sourceBuilder
+                                                .terms(termsBuilder -> termsBuilder.field("real_index"))))));
+                                if (afterKey != null) {
+                                    compositeBuilder.after(afterKey);
+                                }
+                                return compositeBuilder;
+                            })
+                    )
+            );
+
+            SearchResponse<Void> response = openSearchClient.search(request, Void.class);
+            CompositeAggregate aggregate = response.aggregations().get("indexes").composite();
+            for (CompositeBucket bucket : aggregate.buckets().array()) {
+                indexes.add(new IndexId(bucket.key().get("index").to(String.class)));
+            }
+            if (aggregate.buckets().array().size() < INDEXES_PAGE_SIZE || aggregate.afterKey().isEmpty()) {
+                return indexes;
+            }
+            after = Map.of("index", aggregate.afterKey().get("index").to(String.class));
+        }
+    }
+
     private void updateIndexCommuneMapping(IndexId indexId, CommuneId newCommuneId) {
         try (Connection connection = dataSource.getConnection()) {
             DSLContext context = DSL.using(connection, SQLDialect.POSTGRES);
@@ -316,7 +349,7 @@ public class MigratorImpl implements Migrator {
         }
     }
 
-    private List<Map<String, Object>> getDocumentsForIndex(CommuneId communeId, IndexId indexId) throws IOException {
+    private List<Hit<Map<String, Object>>> getDocumentsForIndex(CommuneId communeId, IndexId indexId) throws IOException {
         SearchRequest request = SearchRequest.of(builder -> builder
                 .index(communeId.value())
                 .query(queryBuilder -> queryBuilder
@@ -331,26 +364,29 @@ public class MigratorImpl implements Migrator {
 
         SearchResponse<Map> response = openSearchClient.search(request, Map.class);
 
-        List result = response.hits().hits().stream()
-                .map(Hit::source)
-                .collect(Collectors.toList());
+        // Hits keep their _routing, so transferred documents stay on the shard of their index
+        List result = response.hits().hits();
 
         return result;
     }
 
-    private void addDocumentsToCommune(CommuneId communeId, IndexId indexId, List<Map<String, Object>> documents) throws IOException {
+    private void addDocumentsToCommune(CommuneId communeId, IndexId indexId, List<Hit<Map<String, Object>>> documents) throws IOException {
         if (documents.isEmpty()) {
             return;
         }
 
         List<BulkOperation> operations = new ArrayList<>();
+        String tenantRouting = config.getConfig().getTenantRouting() ? indexId.value() : null;
 
-        for (Map<String, Object> document : documents) {
+        for (Hit<Map<String, Object>> hit : documents) {
+            Map<String, Object> document = hit.source();
             // Ensure the document has the correct real_index label
             document.put("real_index", indexId.value());
+            String routing = hit.routing() != null ? hit.routing() : tenantRouting;
 
             IndexOperation<Map<String, Object>> indexOp = IndexOperation.of(builder -> builder
                     .index(communeId.value())
+                    .routing(routing)
                     .document(document)
             );
 
@@ -8,6 +8,8 @@ import org.opensearch.client.opensearch.core.CountRequest;
 import org.opensearch.client.opensearch.core.IndexRequest;
 import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.indices.ExistsRequest;
+import org.opensearch.client.opensearch.indices.GetIndicesSettingsRequest;
+import org.opensearch.client.opensearch.indices.IndexSettings;
 
 import java.util.HashMap;
 import java.util.List;
@@ -34,6 +36,22 @@ class MigratorImplIntegrationTest extends BaseIntegrationTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Should create commune sorted by tenant fields")
+    void testNewCommuneIsSortedByTenant() throws Exception {
+        // When
+        CommuneId newCommuneId = migrator.newCommune();
+
+        // Then
+        IndexSettings settings = openSearchClient.indices()
+                .getSettings(GetIndicesSettingsRequest.of(b -> b.index(newCommuneId.value())))
+                .get(newCommuneId.value())
+                .settings();
+        IndexSettings index = settings.index() != null ? settings.index() : settings;
+        assertThat(index.sort()).isNotNull();
+        assertThat(index.sort().field()).containsExactly(migrator.getConfig().getConfig().getFeatureName());
+    }
+
     @Test
     @DisplayName("Should count communes correctly")
     void testCountCommunes() throws Exception {
@@ -0,0 +1,88 @@
+package com.omnia.sdk;
+
+import com.omnia.common.config.Config;
+import org.opensearch.client.opensearch._types.mapping.IndexOptions;
+import org.opensearch.client.opensearch._types.mapping.KeywordProperty;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.opensearch.indices.CreateIndexRequest;
+import org.opensearch.client.opensearch.indices.SegmentSortMissing;
+import org.opensearch.client.opensearch.indices.SegmentSortOrder;
+
+/**
+ * Creation request of a commune built from the commune_* options of the config, shared by
+ * the migrator and the transport so that every commune has the same settings and tenant fields.
+ * With index sorting the documents of every logical index are stored contiguously,
+ * so filters on the feature field skip the doc id ranges of other indexes.
+ */
+public final class CommuneTemplate {
+    public static final String FILTER_FIELD = "real_index";
+
+    private CommuneTemplate() {
+    }
+
+    /**
+     * @param communeId Commune to create
+     * @param config Omnia config
+     * @return Creation request with the commune settings and tenant field mappings
+     */
+    public static CreateIndexRequest of(String communeId, Config config) {
+        return of(communeId, config, null);
+    }
+
+    /**
+     * @param communeId Commune to create
+     * @param config Omnia config
+     * @param mappings Mappings requested for a logical index, may be null. Only their properties
+     * are used, top-level mapping options would apply to every index of the commune
+     * @return Creation request with the commune settings, the requested properties and the tenant fields
+     */
+    public static CreateIndexRequest of(String communeId, Config config, TypeMapping mappings) {
+        String featureName = config.getFeatureName();
+        return CreateIndexRequest.of(builder -> builder
+                .index(communeId)
+                .settings(settingsBuilder -> {
+                    if (config.getCommuneIndexSorting()) {
+                        // Index sorting cannot be changed once the commune exists, it follows the field the SDK filters on
+                        settingsBuilder.sort(sortBuilder -> sortBuilder
+                                .field(featureName)
+                                .order(SegmentSortOrder.Asc)
+                                .missing(SegmentSortMissing.Last));
+                    }
+                    if (config.getCommuneShards() != null) {
+                        settingsBuilder.numberOfShards(String.valueOf(config.getCommuneShards()));
+                    }
+                    if (config.getCommuneReplicas() != null) {
+                        settingsBuilder.numberOfReplicas(String.valueOf(config.getCommuneReplicas()));
+                    }
+                    if (config.getCommuneRefreshInterval() != null) {
+                        settingsBuilder.refreshInterval(timeBuilder -> timeBuilder.time(config.getCommuneRefreshInterval()));
+                    }
+                    if (config.getCommuneCodec() != null) {
+                        settingsBuilder.codec(config.getCommuneCodec());
+                    }
+                    return settingsBuilder;
+                })
+                .mappings(mappingBuilder -> {
+                    if (mappings != null) {
+                        mappingBuilder.properties(mappings.properties());
+                    }
+                    // Tenant fields come last, requested mappings cannot turn them into text
+                    return mappingBuilder
+                            .properties(FILTER_FIELD, propertyBuilder -> propertyBuilder
+                                    .keyword(CommuneTemplate::tenantKeyword))
+                            .properties(featureName, propertyBuilder -> propertyBuilder
+                                    .keyword(CommuneTemplate::tenantKeyword));
+                })
+        );
+    }
+
+    // Tenant fields are only filtered on: no scoring data, doc values for sorting,
+    // global ordinals built on refresh instead of on the first terms aggregation
+    private static KeywordProperty.Builder tenantKeyword(KeywordProperty.Builder keywordBuilder) {
+        return keywordBuilder
+                .docValues(true)
+                .eagerGlobalOrdinals(true)
+                .indexOptions(IndexOptions.Docs)
+                .norms(false);
+    }
+}
@@ -0,0 +1,19 @@
+package com.omnia.sdk;
+
+/**
+ * Thrown when a logical index is resolved or created while its documents are still being deleted
+ */
+public class IndexDeletedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String indexId;
+
+    public IndexDeletedException(String indexId) {
+        super("Index " + indexId + " is being deleted");
+        this.indexId = indexId;
+    }
+
+    public String getIndexId() {
+        return indexId;
+    }
+}
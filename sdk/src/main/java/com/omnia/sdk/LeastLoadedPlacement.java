@@ -0,0 +1,61 @@
+package com.omnia.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Places new indexes to the commune with the fewest documents.
+ * Loads are reloaded on {@link #refresh()}; between refreshes every placement adds
+ * an estimated number of documents to the chosen commune, so that a burst of new
+ * indexes is spread instead of piling into the commune that was emptiest at the last refresh.
+ */
+public class LeastLoadedPlacement implements PlacementPolicy {
+    public static final long DEFAULT_DOCUMENTS_PER_INDEX = 100;
+
+    private final Supplier<Map<String, Long>> loads;
+    private final long documentsPerIndex;
+    private Map<String, Long> estimatedLoads = new HashMap<>();
+
+    /**
+     * @param loads Supplies number of documents per commune, see {@link OpenSearchCommuneLoads}
+     */
+    public LeastLoadedPlacement(Supplier<Map<String, Long>> loads) {
+        this(loads, DEFAULT_DOCUMENTS_PER_INDEX);
+    }
+
+    /**
+     * @param loads Supplies number of documents per commune, see {@link OpenSearchCommuneLoads}
+     * @param documentsPerIndex Expected number of documents of a new index
+     */
+    public LeastLoadedPlacement(Supplier<Map<String, Long>> loads, long documentsPerIndex) {
+        this.loads = loads;
+        this.documentsPerIndex = documentsPerIndex;
+    }
+
+    @Override
+    public synchronized String place(String indexId) {
+        String best = null;
+        long bestLoad = Long.MAX_VALUE;
+        for (Map.Entry<String, Long> entry : estimatedLoads.entrySet()) {
+            if (entry.getValue() < bestLoad) {
+                best = entry.getKey();
+                bestLoad = entry.getValue();
+            }
+        }
+        if (best == null) {
+            // Loads are not known yet
+            return DEFAULT_COMMUNE;
+        }
+        estimatedLoads.put(best, bestLoad + documentsPerIndex);
+        return best;
+    }
+
+    @Override
+    public void refresh() {
+        Map<String, Long> current = new HashMap<>(loads.get());
+        synchronized (this) {
+            estimatedLoads = current;
+        }
+    }
+}
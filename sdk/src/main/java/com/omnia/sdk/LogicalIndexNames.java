@@ -0,0 +1,129 @@
+package com.omnia.sdk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Sorted in-memory set of known logical index names used to expand index patterns.
+ * The literal prefix of a pattern selects a contiguous range of the set,
+ * only names in that range are matched against the rest of the pattern.
+ */
+public class LogicalIndexNames {
+    private static final char WILDCARD = '*';
+
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+    // Names added or removed while a reload runs, null when no reload runs
+    private volatile Set<String> changed;
+
+    /**
+     * Checks whether the index name is a pattern
+     * @param indexId Index name from a request
+     * @return true if the name contains a wildcard
+     */
+    public static boolean isPattern(String indexId) {
+        return indexId.indexOf(WILDCARD) >= 0;
+    }
+
+    /**
+     * Finds known indexes matching the pattern
+     * @param pattern Index pattern, {@code *} matches any sequence of characters
+     * @return Matching index names in sorted order
+     */
+    public List<String> match(String pattern) {
+        int wildcard = pattern.indexOf(WILDCARD);
+        if (wildcard < 0) {
+            return names.contains(pattern) ? List.of(pattern) : List.of();
+        }
+        String prefix = pattern.substring(0, wildcard);
+        NavigableSet<String> range = prefix.isEmpty()
+                ? names
+                : names.subSet(prefix, true, prefix + Character.MAX_VALUE, false);
+        // Trailing wildcard is the common case, every name in the range matches
+        boolean prefixOnly = wildcard == pattern.length() - 1;
+        List<String> matched = new ArrayList<>();
+        for (String name : range) {
+            if (prefixOnly || matches(pattern, wildcard, name, prefix.length())) {
+                matched.add(name);
+            }
+        }
+        return matched;
+    }
+
+    public void add(String indexId) {
+        journal(indexId);
+        names.add(indexId);
+    }
+
+    public void remove(String indexId) {
+        journal(indexId);
+        names.remove(indexId);
+    }
+
+    /**
+     * Merges the names reloaded e.g. from the database into the known names.
+     * Names added or removed while the loader runs keep their current state,
+     * so changes which the load raced with are not lost
+     * @param loader Loads the complete set of logical index names
+     * @param pending Names which are known but may be missing from the load, e.g. unwritten registrations
+     */
+    public synchronized void reload(Supplier<? extends Collection<String>> loader, Predicate<String> pending) {
+        Set<String> journal = ConcurrentHashMap.newKeySet();
+        changed = journal;
+        try {
+            Set<String> loaded = new HashSet<>(loader.get());
+            for (String name : loaded) {
+                if (!journal.contains(name)) {
+                    names.add(name);
+                }
+            }
+            names.removeIf(name -> !loaded.contains(name) && !journal.contains(name) && !pending.test(name));
+        } finally {
+            changed = null;
+        }
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private void journal(String indexId) {
+        Set<String> journal = changed;
+        if (journal != null) {
+            journal.add(indexId);
+        }
+    }
+
+    /**
+     * Matches the name against the pattern from the given positions, backtracking to the last wildcard
+     */
+    private static boolean matches(String pattern, int p, String name, int n) {
+        int star = -1;
+        int resume = 0;
+        while (n < name.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+                star = p++;
+                resume = n;
+            } else if (p < pattern.length() && pattern.charAt(p) == name.charAt(n)) {
+                p++;
+                n++;
+            } else if (star >= 0) {
+                p = star + 1;
+                n = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+            p++;
+        }
+        return p == pattern.length();
+    }
+}
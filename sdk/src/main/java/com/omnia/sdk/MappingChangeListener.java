@@ -0,0 +1,156 @@
+package com.omnia.sdk;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Background listener of INDEX_TO_COMMUNE changes published by the
+ * {@code index_to_commune_notify} trigger (see schema.sql).
+ * Keeps in-memory routing state consistent with the database, so that a transferred
+ * index is routed to its new commune right away instead of after TTL expiration.
+ */
+public class MappingChangeListener implements Runnable, AutoCloseable {
+    public static final String CHANNEL = "omnia_index_to_commune";
+
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+    private static final int RECONNECT_DELAY_MILLIS = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(MappingChangeListener.class);
+
+    private final String jdbcUrl;
+    private final String username;
+    private final String password;
+    private final Handler handler;
+    private Thread thread;
+    private volatile boolean running = true;
+    private volatile Connection connection;
+
+    public MappingChangeListener(String jdbcUrl, String username, String password, Handler handler) {
+        this.jdbcUrl = jdbcUrl;
+        this.username = username;
+        this.password = password;
+        this.handler = handler;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Mapping change listener is already started");
+        }
+        thread = new Thread(this, "omnia-mapping-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    connect();
+                }
+                PGNotification[] notifications = connection.unwrap(PGConnection.class)
+                        .getNotifications(POLL_TIMEOUT_MILLIS);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Lost connection to mapping change channel, reconnecting", e);
+                closeConnection();
+                sleep(RECONNECT_DELAY_MILLIS);
+            }
+        }
+        closeConnection();
+    }
+
+    private void connect() throws SQLException {
+        connection = DriverManager.getConnection(jdbcUrl, username, password);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        }
+        // Changes made while we were not listening are lost
+        handler.onReconnect();
+    }
+
+    void apply(String payload) {
+        int separator = payload.indexOf('\n');
+        if (separator < 0) {
+            handler.onDelete(payload);
+        } else {
+            handler.onUpdate(payload.substring(0, separator), payload.substring(separator + 1));
+        }
+    }
+
+    private void closeConnection() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close mapping change connection", e);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread listener;
+        synchronized (this) {
+            running = false;
+            listener = thread;
+        }
+        if (listener == null) {
+            return;
+        }
+        listener.interrupt();
+        try {
+            listener.join(POLL_TIMEOUT_MILLIS * 2L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Receives mapping changes on the listener thread
+     */
+    public interface Handler {
+        /**
+         * Index was registered or moved to other commune
+         * @param indexId Logical index identifier
+         * @param commune New commune of the index
+         */
+        void onUpdate(String indexId, String commune);
+
+        /**
+         * Index mapping was removed
+         * @param indexId Logical index identifier
+         */
+        void onDelete(String indexId);
+
+        /**
+         * Listener (re)connected, changes made while it was disconnected are unknown
+         */
+        void onReconnect();
+    }
+}
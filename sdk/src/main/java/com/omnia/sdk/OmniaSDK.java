@@ -4,11 +4,21 @@ import org.opensearch.client.opensearch._types.FieldValue;
 import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch._types.query_dsl.TermQuery;
+import org.opensearch.client.opensearch._types.query_dsl.TermsQuery;
 import org.opensearch.client.opensearch.core.SearchRequest;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
-public interface OmniaSDK {
+public interface OmniaSDK extends AutoCloseable {
     /**
      * Transforms an index ID to commune ID
      * @param indexId The original index identifier to transform
@@ -16,12 +26,176 @@ public interface OmniaSDK {
      */
     String transformIndexId(String indexId);
 
+    /**
+     * Transforms several index IDs to commune IDs at once
+     * @param indexIds The original index identifiers to transform
+     * @return Map from index ID to its commune ID, ordered as indexIds
+     */
+    default Map<String, String> transformIndexIds(Collection<String> indexIds) {
+        Map<String, String> communes = new LinkedHashMap<>();
+        for (String indexId : indexIds) {
+            communes.put(indexId, transformIndexId(indexId));
+        }
+        return communes;
+    }
+
+    /**
+     * Transforms an index ID to commune ID without blocking the caller on the database.
+     * Default implementation resolves on the calling thread
+     * @param indexId The original index identifier to transform
+     * @return Stage completed with transformed commune ID
+     */
+    default CompletionStage<String> transformIndexIdAsync(String indexId) {
+        try {
+            return CompletableFuture.completedFuture(transformIndexId(indexId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Transforms several index IDs to commune IDs without blocking the caller on the database.
+     * Default implementation resolves on the calling thread
+     * @param indexIds The original index identifiers to transform
+     * @return Stage completed with map from index ID to its commune ID, ordered as indexIds
+     */
+    default CompletionStage<Map<String, String>> transformIndexIdsAsync(Collection<String> indexIds) {
+        try {
+            return CompletableFuture.completedFuture(transformIndexIds(indexIds));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Registers logical indexes in the mapping store, new indexes are placed on communes.
+     * Unlike {@link #transformIndexIdsAsync}, the stage completes only once new registrations are stored.
+     * Default implementation resolves the indexes
+     * @param indexIds Logical indexes to register
+     * @return Stage completed with map from index ID to its commune ID, ordered as indexIds
+     */
+    default CompletionStage<Map<String, String>> registerIndexesAsync(Collection<String> indexIds) {
+        return transformIndexIdsAsync(indexIds);
+    }
+
+    /**
+     * Hides logical indexes from reads and registrations until their documents are removed.
+     * Default implementation does not support deletion
+     * @param indexIds Logical indexes to delete
+     * @return Stage completed with map from deleted index to the commune holding its documents,
+     * indexes that are not registered are missing from the map
+     */
+    default CompletionStage<Map<String, String>> tombstoneIndexesAsync(Collection<String> indexIds) {
+        return CompletableFuture.failedFuture(new UnsupportedOperationException("Index deletion requires a mapping store"));
+    }
+
+    /**
+     * Records the task removing documents of a deleted index
+     * @param indexId Deleted logical index
+     * @param taskId OpenSearch task identifier
+     */
+    default void recordDeletionTask(String indexId, String taskId) {
+    }
+
+    /**
+     * Tells whether unfinished deletions are stored, so that they can be leased with {@link #claimDeletions}.
+     * Default implementation does not store deletions
+     * @return true if deletions of a client that stopped can be resumed by another one
+     */
+    default boolean storesDeletions() {
+        return false;
+    }
+
+    /**
+     * Leases unfinished deletions to the owner, so that deletions of a client that stopped are
+     * resumed by another one. Leases the owner already holds are renewed.
+     * Default implementation does not store deletions and leases none
+     * @param owner Identifier of the client removing documents
+     * @param lease How long the deletions stay leased without renewal
+     * @return Deletions leased to the owner
+     */
+    default List<PendingDeletion> claimDeletions(String owner, Duration lease) {
+        return List.of();
+    }
+
+    /**
+     * Marks deletion of the index finished, the index can be created again
+     * @param indexId Deleted logical index
+     */
+    default void completeIndexDeletion(String indexId) {
+    }
+
+    /**
+     * Reads settings stored in the config table, e.g. per-index rate limits.
+     * Default implementation has no config table
+     * @param prefix Prefix of the setting keys
+     * @return Map from setting key to its value
+     */
+    default Map<String, String> loadConfigValues(String prefix) {
+        return Map.of();
+    }
+
     /**
      * Returns filter field where original index will be stored
      * @return Field in OpenSearch
      */
     String getFilterField();
 
+    /**
+     * Finds logical indexes matching the pattern without querying the database per call.
+     * Default implementation does not know index names, patterns match no index and
+     * requests naming only patterns fail like requests of missing indexes
+     * @param pattern Index pattern, {@code *} matches any sequence of characters
+     * @return Matching logical indexes, empty if none match
+     */
+    default List<String> matchIndexes(String pattern) {
+        return List.of();
+    }
+
+    /**
+     * Replaces index patterns with the logical indexes they match
+     * @param indexIds Indexes of a request, some of them may be patterns
+     * @return Indexes without patterns, or indexIds itself if there are no patterns
+     */
+    default List<String> expandIndexPatterns(List<String> indexIds) {
+        if (indexIds.stream().noneMatch(LogicalIndexNames::isPattern)) {
+            return indexIds;
+        }
+        Set<String> expanded = new LinkedHashSet<>();
+        for (String indexId : indexIds) {
+            if (LogicalIndexNames.isPattern(indexId)) {
+                expanded.addAll(matchIndexes(indexId));
+            } else {
+                expanded.add(indexId);
+            }
+        }
+        return List.copyOf(expanded);
+    }
+
+    /**
+     * Replaces index patterns with the logical indexes they match without blocking the caller on the database.
+     * Default implementation expands on the calling thread
+     * @param indexIds Indexes of a request, some of them may be patterns
+     * @return Stage completed with indexes without patterns
+     */
+    default CompletionStage<List<String>> expandIndexPatternsAsync(List<String> indexIds) {
+        try {
+            return CompletableFuture.completedFuture(expandIndexPatterns(indexIds));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns custom routing of the index documents. Documents of an index with routing
+     * live on a single shard of the commune, so requests of the index hit only that shard
+     * @param indexId Logical index identifier
+     * @return Routing value, or null if documents are spread over all shards
+     */
+    default String getRouting(String indexId) {
+        return null;
+    }
+
     /**
      * Combines an existing query params with index-specific filter
      * @param params is endpoint.queryParams()
@@ -52,14 +226,53 @@ public interface OmniaSDK {
     }
 
     /**
-     * Combines an existing query with index-specific filter
+     * Combines an existing query with index-specific filter.
+     * The filter goes to a non-scoring filter clause, so OpenSearch can cache it
      * @param query Base query to add filtering to
      * @param indexId Target index to get filter from
      * @return New {@link Query} that combines both input query and index filter
      */
     default Query addIndexFilter(Query query, String indexId) {
         Query filter = getIndexFilter(indexId);
-        BoolQuery boolQuery = new BoolQuery.Builder().must(query).must(filter).build();
+        BoolQuery boolQuery = new BoolQuery.Builder().must(query).filter(filter).build();
+        return new Query.Builder().bool(boolQuery).build();
+    }
+
+    /**
+     * Combines an existing query with a filter matching documents of any of the indexes.
+     * Indexes are grouped by commune, every commune gets one terms filter on the filter field,
+     * so a document of one index never has to match filters of the others
+     * @param query Base query to add filtering to
+     * @param communes Map from target index to its commune, as returned by {@link #transformIndexIds}
+     * @return New {@link Query} that combines both input query and indexes filter,
+     * or query itself if there are no indexes
+     */
+    default Query addIndexFilter(Query query, Map<String, String> communes) {
+        if (communes.isEmpty()) {
+            return query;
+        }
+        if (communes.size() == 1) {
+            return addIndexFilter(query, communes.keySet().iterator().next());
+        }
+        Map<String, List<FieldValue>> indexesByCommune = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : communes.entrySet()) {
+            indexesByCommune.computeIfAbsent(entry.getValue(), commune -> new ArrayList<>())
+                    .add(FieldValue.of(entry.getKey()));
+        }
+
+        String filterField = getFilterField();
+        Query filter;
+        if (indexesByCommune.size() == 1) {
+            List<FieldValue> indexes = indexesByCommune.values().iterator().next();
+            filter = TermsQuery.of(t -> t.field(filterField).terms(v -> v.value(indexes))).toQuery();
+        } else {
+            BoolQuery.Builder anyCommune = new BoolQuery.Builder().minimumShouldMatch("1");
+            indexesByCommune.forEach((commune, indexes) -> anyCommune.should(s -> s.bool(b -> b
+                    .filter(f -> f.term(t -> t.field("_index").value(FieldValue.of(commune))))
+                    .filter(f -> f.terms(t -> t.field(filterField).terms(v -> v.value(indexes)))))));
+            filter = anyCommune.build().toQuery();
+        }
+        BoolQuery boolQuery = new BoolQuery.Builder().must(query).filter(filter).build();
         return new Query.Builder().bool(boolQuery).build();
     }
 
@@ -77,4 +290,11 @@ public interface OmniaSDK {
                 .index(communeIndexId)
                 .query(filter);
     }
+
+    /**
+     * Releases connections and background workers held by the SDK
+     */
+    @Override
+    default void close() {
+    }
 }
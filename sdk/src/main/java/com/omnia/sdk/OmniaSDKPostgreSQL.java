@@ -3,18 +3,111 @@ package com.omnia.sdk;
 import com.omnia.common.config.db.Database;
 import com.omnia.common.config.db.PostgresqlParams;
 import com.omnia.jooq.tables.IndexToCommune;
+import com.omnia.jooq.tables.IndexTombstone;
+import com.omnia.jooq.tables.records.IndexToCommuneRecord;
+import com.omnia.jooq.tables.records.IndexTombstoneRecord;
 import com.omnia.common.config.AppConfig;
+import com.omnia.common.config.Config;
 import com.zaxxer.hikari.HikariDataSource;
 import org.jooq.DSLContext;
+import org.jooq.DatePart;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep2;
 import org.jooq.SQLDialect;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class OmniaSDKPostgreSQL implements OmniaSDK {
+    private static final IndexToCommune INDEX_TO_COMMUNE = IndexToCommune.INDEX_TO_COMMUNE;
+    private static final IndexTombstone INDEX_TOMBSTONE = IndexTombstone.INDEX_TOMBSTONE;
+
+    private static final Logger logger = LoggerFactory.getLogger(OmniaSDKPostgreSQL.class);
+
     private final DSLContext dsl;
     private final String featureName;
+    private final String configTableName;
+    private final boolean tenantRouting;
+    private final RoutingCache routingCache;
+    private final Function<String, Query> filterBuilder = this::buildIndexFilter;
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+    private final HikariDataSource dataSource;
+    private final MappingChangeListener mappingChangeListener;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService lookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Path snapshotPath;
+    private volatile RoutingSnapshot snapshot;
+    private volatile boolean snapshotWarmingUp;
+    // Communes notified since startup, empty for deleted indexes. They take precedence over
+    // the snapshot until it is refreshed, null once the snapshot is not served anymore
+    private volatile Map<String, String> snapshotChanges;
+    private final LongAdder staleReads = new LongAdder();
+
+    private final RegistrationBatcher registrations;
+    private final boolean awaitRegistration;
+
+    private final PlacementPolicy placementPolicy;
+
+    // Hash placement mode, null when every index is looked up in the database
+    private final RendezvousHashing hashRing;
+    private final Map<String, String> overrides = new ConcurrentHashMap<>();
+    // Pending deletions, hashed indexes are not looked up in the database
+    private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+    // Indexes whose override or tombstone changed while a reload runs, null when no reload runs
+    private volatile Set<String> changedPlacements;
+    // Known logical indexes for pattern expansion, loaded on first use
+    private final LogicalIndexNames indexNames = new LogicalIndexNames();
+    private volatile boolean indexNamesLoaded;
+    // Registered names still waiting in the batcher, reloads from the database do not see them
+    private final Set<String> unwrittenNames = ConcurrentHashMap.newKeySet();
 
     public OmniaSDKPostgreSQL(AppConfig  config) {
-        featureName = config.getConfig().getFeatureName();
+        this(config, PlacementPolicy.defaultCommune());
+    }
+
+    /**
+     * @param config Application config
+     * @param placementPolicy Chooses communes for new indexes, e.g. {@link LeastLoadedPlacement}
+     */
+    public OmniaSDKPostgreSQL(AppConfig config, PlacementPolicy placementPolicy) {
+        this.placementPolicy = placementPolicy;
+        Config omniaConfig = config.getConfig();
+        featureName = omniaConfig.getFeatureName();
+        configTableName = omniaConfig.getConfigTableName();
+        tenantRouting = omniaConfig.getTenantRouting();
+        routingCache = new RoutingCache(omniaConfig.getRoutingCacheMaxEntries(),
+                Duration.ofSeconds(omniaConfig.getRoutingCacheTtlSeconds()));
         Database dbConfig = config.getDatabase();
         if (!"postgresql".equalsIgnoreCase(dbConfig.getType())) {
             throw new IllegalArgumentException("Unsupported database type: " + dbConfig.getType());
@@ -23,14 +116,71 @@ public class OmniaSDKPostgreSQL implements OmniaSDK {
         dbConfig.resolveParams();
         PostgresqlParams params = (PostgresqlParams) dbConfig.getResolvedParams();
 
-        HikariDataSource dataSource = new HikariDataSource();
-        dataSource.setJdbcUrl(buildJdbcUrl(params));
+        String jdbcUrl = buildJdbcUrl(params);
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
         dataSource.setUsername(params.getUsername());
         dataSource.setPassword(params.getPassword());
         dataSource.setMaximumPoolSize(10);
         dataSource.setMinimumIdle(2);
 
         this.dsl = DSL.using(dataSource, SQLDialect.POSTGRES);
+
+        String placementMode = omniaConfig.getPlacementMode();
+        if ("hash".equalsIgnoreCase(placementMode)) {
+            hashRing = new RendezvousHashing(omniaConfig.getHashRing());
+            reloadOverrides();
+        } else if ("database".equalsIgnoreCase(placementMode)) {
+            hashRing = null;
+        } else {
+            throw new IllegalArgumentException("Unsupported placement mode: " + placementMode);
+        }
+
+        if (omniaConfig.getSnapshotPath() != null) {
+            // Recorded before the listener starts, so that no notification is missed
+            snapshotChanges = new ConcurrentHashMap<>();
+        }
+
+        if (omniaConfig.getListenMappingChanges()) {
+            MappingChangeListener.Handler handler = hashRing != null ? new OverridesHandler() : new RoutingCacheHandler();
+            mappingChangeListener = new MappingChangeListener(jdbcUrl, params.getUsername(), params.getPassword(), handler);
+            mappingChangeListener.start();
+        } else {
+            mappingChangeListener = null;
+        }
+
+        awaitRegistration = omniaConfig.getAwaitRegistration();
+        registrations = new RegistrationBatcher(this::insertRegistrations,
+                omniaConfig.getRegistrationBatchSize(), omniaConfig.getRegistrationLingerMillis());
+        registrations.start();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "omnia-sdk-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(this::refreshPlacementPolicy, 0,
+                omniaConfig.getPlacementRefreshSeconds(), TimeUnit.SECONDS);
+
+        if (hashRing != null) {
+            long interval = omniaConfig.getOverrideRefreshSeconds();
+            scheduler.scheduleWithFixedDelay(this::refreshOverrides, interval, interval, TimeUnit.SECONDS);
+        }
+
+        if (hashRing == null) {
+            long interval = omniaConfig.getIndexNamesRefreshSeconds();
+            scheduler.scheduleWithFixedDelay(this::refreshIndexNames, interval, interval, TimeUnit.SECONDS);
+        }
+
+        if (omniaConfig.getSnapshotPath() != null) {
+            snapshotPath = Path.of(omniaConfig.getSnapshotPath());
+            openSnapshot(Duration.ofSeconds(omniaConfig.getSnapshotMaxWarmAgeSeconds()));
+            scheduler.scheduleWithFixedDelay(this::refreshSnapshot, 0,
+                    omniaConfig.getSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+        } else {
+            snapshotPath = null;
+        }
     }
 
     private String buildJdbcUrl(PostgresqlParams params) {
@@ -43,28 +193,681 @@ public class OmniaSDKPostgreSQL implements OmniaSDK {
 
     @Override
     public String transformIndexId(String indexId) {
-        String commune = dsl.select(IndexToCommune.INDEX_TO_COMMUNE.COMMUNE)
-                .from(IndexToCommune.INDEX_TO_COMMUNE)
-                .where(IndexToCommune.INDEX_TO_COMMUNE.INDEX.eq(indexId))
+        if (hashRing != null) {
+            return place(indexId);
+        }
+        String commune = routingCache.get(indexId);
+        return commune != null ? commune : resolveUncached(indexId);
+    }
+
+    @Override
+    public Map<String, String> transformIndexIds(Collection<String> indexIds) {
+        Map<String, String> communes = new LinkedHashMap<>();
+        Set<String> missing = readCached(indexIds, communes);
+        if (!missing.isEmpty()) {
+            resolveUncached(missing, communes);
+        }
+        return communes;
+    }
+
+    @Override
+    public CompletionStage<String> transformIndexIdAsync(String indexId) {
+        if (hashRing != null) {
+            // Deleted indexes fail the stage like any other lookup error, not the caller
+            try {
+                return CompletableFuture.completedFuture(place(indexId));
+            } catch (IndexDeletedException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        String commune = routingCache.get(indexId);
+        if (commune != null) {
+            return CompletableFuture.completedFuture(commune);
+        }
+        return CompletableFuture.supplyAsync(() -> resolveUncached(indexId), lookupExecutor);
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> transformIndexIdsAsync(Collection<String> indexIds) {
+        Map<String, String> communes = new LinkedHashMap<>();
+        Set<String> missing;
+        try {
+            missing = readCached(indexIds, communes);
+        } catch (IndexDeletedException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(communes);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            resolveUncached(missing, communes);
+            return communes;
+        }, lookupExecutor);
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> registerIndexesAsync(Collection<String> indexIds) {
+        if (hashRing != null) {
+            // Hashed indexes are not registered, only overrides are stored
+            return transformIndexIdsAsync(indexIds);
+        }
+        return CompletableFuture.supplyAsync(() -> registerIndexes(indexIds), lookupExecutor)
+                .thenCompose(registered -> registered);
+    }
+
+    private CompletableFuture<Map<String, String>> registerIndexes(Collection<String> indexIds) {
+        Map<String, String> cached = new HashMap<>();
+        Map<String, Long> stamps = new HashMap<>();
+        Set<String> uncached = new LinkedHashSet<>();
+        for (String indexId : indexIds) {
+            String commune = routingCache.get(indexId);
+            if (commune != null) {
+                cached.put(indexId, commune);
+            } else {
+                stamps.put(indexId, routingCache.stamp(indexId));
+                uncached.add(indexId);
+            }
+        }
+        Map<String, String> stored = uncached.isEmpty() ? Map.of() : dsl.select(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE)
+                .from(INDEX_TO_COMMUNE)
+                .where(INDEX_TO_COMMUNE.INDEX.eq(DSL.any(uncached.toArray(String[]::new))))
+                .fetchMap(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE);
+        checkNotDeleted(uncached.stream().filter(indexId -> !stored.containsKey(indexId)).toList());
+
+        Map<String, String> communes = new LinkedHashMap<>();
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (String indexId : indexIds) {
+            String commune = stored.get(indexId);
+            if (commune != null) {
+                routingCache.put(indexId, commune, stamps.get(indexId));
+            } else {
+                // Cached placement may still be waiting in the batcher, registering it again is a no-op once stored
+                commune = cached.get(indexId);
+                if (commune == null) {
+                    commune = placementPolicy.place(indexId);
+                    routingCache.put(indexId, commune, stamps.get(indexId));
+                }
+                written.add(register(indexId, commune));
+            }
+            communes.put(indexId, commune);
+        }
+        return CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)).thenApply(ignored -> communes);
+    }
+
+    @Override
+    public List<String> matchIndexes(String pattern) {
+        if (hashRing != null) {
+            // Hashed indexes are not stored, their names are unknown
+            throw new OpenSearchException(ErrorResponse.of(r -> r
+                    .status(400)
+                    .error(e -> e.type("illegal_argument_exception")
+                            .reason("Index patterns are not supported in hash placement mode: " + pattern))));
+        }
+        if (!indexNamesLoaded) {
+            loadIndexNames();
+        }
+        return indexNames.match(pattern);
+    }
+
+    @Override
+    public CompletionStage<List<String>> expandIndexPatternsAsync(List<String> indexIds) {
+        if (hashRing != null || indexNamesLoaded || indexIds.stream().noneMatch(LogicalIndexNames::isPattern)) {
+            return OmniaSDK.super.expandIndexPatternsAsync(indexIds);
+        }
+        // The first expansion reads every index name, it does not run on the caller thread
+        return CompletableFuture.supplyAsync(() -> expandIndexPatterns(indexIds), lookupExecutor);
+    }
+
+    @Override
+    public Map<String, String> loadConfigValues(String prefix) {
+        Field<String> key = DSL.field(DSL.name("key"), String.class);
+        Field<String> value = DSL.field(DSL.name("value"), String.class);
+        return dsl.select(key, value)
+                .from(DSL.table(DSL.name(configTableName)))
+                .where(key.startsWith(prefix))
+                .fetchMap(key, value);
+    }
+
+    private synchronized void loadIndexNames() {
+        if (!indexNamesLoaded) {
+            reloadIndexNames();
+            indexNamesLoaded = true;
+        }
+    }
+
+    // Names registered or deleted during the select keep their state, unwritten registrations are kept
+    private void reloadIndexNames() {
+        indexNames.reload(() -> dsl.select(INDEX_TO_COMMUNE.INDEX)
+                .from(INDEX_TO_COMMUNE)
+                .fetch(INDEX_TO_COMMUNE.INDEX), unwrittenNames::contains);
+    }
+
+    private void refreshIndexNames() {
+        if (!indexNamesLoaded) {
+            return;
+        }
+        try {
+            reloadIndexNames();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to reload logical index names", e);
+        }
+    }
+
+    @Override
+    public CompletionStage<Map<String, String>> tombstoneIndexesAsync(Collection<String> indexIds) {
+        return CompletableFuture.supplyAsync(() -> tombstoneIndexes(indexIds), lookupExecutor);
+    }
+
+    private Map<String, String> tombstoneIndexes(Collection<String> indexIds) {
+        Map<String, String> deleted = dsl.transactionResult(configuration -> {
+            DSLContext transaction = DSL.using(configuration);
+            // Removing the mapping publishes the deletion to other clients through the notify trigger
+            Map<String, String> communes = new LinkedHashMap<>(transaction.deleteFrom(INDEX_TO_COMMUNE)
+                    .where(INDEX_TO_COMMUNE.INDEX.eq(DSL.any(indexIds.toArray(String[]::new))))
+                    .returningResult(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE)
+                    .fetch()
+                    .intoMap(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE));
+            if (hashRing != null) {
+                for (String indexId : indexIds) {
+                    if (!communes.containsKey(indexId)) {
+                        communes.put(indexId, hashRing.select(indexId));
+                    }
+                }
+            }
+            if (communes.isEmpty()) {
+                return communes;
+            }
+            InsertValuesStep2<IndexTombstoneRecord, String, String> insert =
+                    transaction.insertInto(INDEX_TOMBSTONE, INDEX_TOMBSTONE.INDEX, INDEX_TOMBSTONE.COMMUNE);
+            for (Map.Entry<String, String> entry : communes.entrySet()) {
+                insert = insert.values(entry.getKey(), entry.getValue());
+            }
+            insert.onConflict(INDEX_TOMBSTONE.INDEX)
+                    .doUpdate()
+                    .set(INDEX_TOMBSTONE.COMMUNE, DSL.excluded(INDEX_TOMBSTONE.COMMUNE))
+                    .set(INDEX_TOMBSTONE.TASK_ID, (String) null)
+                    .set(INDEX_TOMBSTONE.DELETED_AT, DSL.currentLocalDateTime())
+                    .set(INDEX_TOMBSTONE.COMPLETED_AT, (LocalDateTime) null)
+                    .set(INDEX_TOMBSTONE.LEASE_OWNER, (String) null)
+                    .set(INDEX_TOMBSTONE.LEASE_UNTIL, (LocalDateTime) null)
+                    .execute();
+            return communes;
+        });
+        for (String indexId : deleted.keySet()) {
+            routingCache.invalidate(indexId);
+            recordSnapshotChange(indexId, null);
+            indexNames.remove(indexId);
+            journalPlacement(indexId);
+            overrides.remove(indexId);
+            tombstones.add(indexId);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void recordDeletionTask(String indexId, String taskId) {
+        dsl.update(INDEX_TOMBSTONE)
+                .set(INDEX_TOMBSTONE.TASK_ID, taskId)
+                .where(INDEX_TOMBSTONE.INDEX.eq(indexId))
+                .execute();
+    }
+
+    @Override
+    public boolean storesDeletions() {
+        return true;
+    }
+
+    @Override
+    public List<PendingDeletion> claimDeletions(String owner, Duration lease) {
+        // Lease times come from the database clock, clients may disagree on the time
+        return dsl.update(INDEX_TOMBSTONE)
+                .set(INDEX_TOMBSTONE.LEASE_OWNER, owner)
+                .set(INDEX_TOMBSTONE.LEASE_UNTIL, DSL.localDateTimeAdd(DSL.currentLocalDateTime(), lease.toSeconds(), DatePart.SECOND))
+                .where(INDEX_TOMBSTONE.COMPLETED_AT.isNull())
+                .and(INDEX_TOMBSTONE.LEASE_OWNER.isNull()
+                        .or(INDEX_TOMBSTONE.LEASE_OWNER.eq(owner))
+                        .or(INDEX_TOMBSTONE.LEASE_UNTIL.lt(DSL.currentLocalDateTime())))
+                .returningResult(INDEX_TOMBSTONE.INDEX, INDEX_TOMBSTONE.COMMUNE, INDEX_TOMBSTONE.TASK_ID)
+                .fetch(record -> new PendingDeletion(record.value1(), record.value2(), record.value3()));
+    }
+
+    @Override
+    public void completeIndexDeletion(String indexId) {
+        dsl.update(INDEX_TOMBSTONE)
+                .set(INDEX_TOMBSTONE.COMPLETED_AT, DSL.currentLocalDateTime())
+                .where(INDEX_TOMBSTONE.INDEX.eq(indexId))
+                .execute();
+        journalPlacement(indexId);
+        tombstones.remove(indexId);
+    }
+
+    private Set<String> readCached(Collection<String> indexIds, Map<String, String> communes) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String indexId : indexIds) {
+            if (hashRing != null) {
+                communes.put(indexId, place(indexId));
+                continue;
+            }
+            String commune = routingCache.get(indexId);
+            if (commune == null) {
+                commune = readWarmSnapshot(indexId);
+            }
+            communes.put(indexId, commune);
+            if (commune == null) {
+                missing.add(indexId);
+            }
+        }
+        return missing;
+    }
+
+    private String place(String indexId) {
+        if (tombstones.contains(indexId)) {
+            throw new IndexDeletedException(indexId);
+        }
+        String commune = overrides.get(indexId);
+        return commune != null ? commune : hashRing.select(indexId);
+    }
+
+    /**
+     * Applies the overrides and tombstones stored in the database as a diff. Indexes changed by
+     * notifications or deletions while the load runs keep their state, the load may predate the change
+     */
+    private synchronized void reloadOverrides() {
+        Set<String> journal = ConcurrentHashMap.newKeySet();
+        changedPlacements = journal;
+        try {
+            Map<String, String> loaded = loadOverrides();
+            Set<String> loadedTombstones = loadTombstones();
+            loaded.forEach((indexId, commune) -> {
+                if (!journal.contains(indexId)) {
+                    overrides.put(indexId, commune);
+                }
+            });
+            overrides.keySet().removeIf(indexId -> !loaded.containsKey(indexId) && !journal.contains(indexId));
+            for (String indexId : loadedTombstones) {
+                if (!journal.contains(indexId)) {
+                    tombstones.add(indexId);
+                }
+            }
+            tombstones.removeIf(indexId -> !loadedTombstones.contains(indexId) && !journal.contains(indexId));
+        } finally {
+            changedPlacements = null;
+        }
+    }
+
+    private void journalPlacement(String indexId) {
+        Set<String> journal = changedPlacements;
+        if (journal != null) {
+            journal.add(indexId);
+        }
+    }
+
+    private Map<String, String> loadOverrides() {
+        return dsl.select(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE)
+                .from(INDEX_TO_COMMUNE)
+                .fetchMap(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE);
+    }
+
+    private Set<String> loadTombstones() {
+        return new HashSet<>(dsl.select(INDEX_TOMBSTONE.INDEX)
+                .from(INDEX_TOMBSTONE)
+                .where(INDEX_TOMBSTONE.COMPLETED_AT.isNull())
+                .fetch(INDEX_TOMBSTONE.INDEX));
+    }
+
+    /**
+     * Fails if any of the unregistered indexes is still being deleted
+     */
+    private void checkNotDeleted(Collection<String> indexIds) {
+        if (indexIds.isEmpty()) {
+            return;
+        }
+        String deleted = dsl.select(INDEX_TOMBSTONE.INDEX)
+                .from(INDEX_TOMBSTONE)
+                .where(INDEX_TOMBSTONE.INDEX.eq(DSL.any(indexIds.toArray(String[]::new))))
+                .and(INDEX_TOMBSTONE.COMPLETED_AT.isNull())
+                .limit(1)
+                .fetchOne(INDEX_TOMBSTONE.INDEX);
+        if (deleted != null) {
+            throw new IndexDeletedException(deleted);
+        }
+    }
+
+    private void refreshOverrides() {
+        try {
+            reloadOverrides();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to reload placement overrides", e);
+        }
+    }
+
+    private void refreshPlacementPolicy() {
+        try {
+            placementPolicy.refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh placement policy", e);
+        }
+    }
+
+    private String resolveUncached(String indexId) {
+        String commune = readWarmSnapshot(indexId);
+        if (commune != null) {
+            return commune;
+        }
+        try {
+            return lookups.execute(indexId, this::loadCommune);
+        } catch (DataAccessException e) {
+            commune = readStaleSnapshot(indexId);
+            if (commune == null) {
+                throw e;
+            }
+            return commune;
+        }
+    }
+
+    private void resolveUncached(Set<String> missing, Map<String, String> communes) {
+        try {
+            communes.putAll(lookups.executeAll(missing, this::loadCommunes));
+        } catch (DataAccessException e) {
+            for (String indexId : missing) {
+                String commune = readStaleSnapshot(indexId);
+                if (commune == null) {
+                    throw e;
+                }
+                communes.put(indexId, commune);
+            }
+        }
+    }
+
+    private String loadCommune(String indexId) {
+        // Taken before the select, a notification received meanwhile keeps the result out of the cache
+        long stamp = routingCache.stamp(indexId);
+        String commune = dsl.select(INDEX_TO_COMMUNE.COMMUNE)
+                .from(INDEX_TO_COMMUNE)
+                .where(INDEX_TO_COMMUNE.INDEX.eq(indexId))
                 .fetchOneInto(String.class);
 
         if (commune != null) {
+            routingCache.put(indexId, commune, stamp);
             return commune;
         } else {
-            final String defaultCommune = "commune_main";
+            checkNotDeleted(List.of(indexId));
+            commune = placementPolicy.place(indexId);
+            routingCache.put(indexId, commune, stamp);
+            CompletableFuture<Void> written = register(indexId, commune);
+            if (awaitRegistration) {
+                awaitWritten(written);
+            }
+            return commune;
+        }
+    }
 
-            dsl.insertInto(IndexToCommune.INDEX_TO_COMMUNE)
-                    .set(IndexToCommune.INDEX_TO_COMMUNE.INDEX, indexId)
-                    .set(IndexToCommune.INDEX_TO_COMMUNE.COMMUNE, defaultCommune)
-                    .onConflictDoNothing()
-                    .execute();
+    private Map<String, String> loadCommunes(Collection<String> indexIds) {
+        Map<String, Long> stamps = new HashMap<>();
+        for (String indexId : indexIds) {
+            stamps.put(indexId, routingCache.stamp(indexId));
+        }
+        Map<String, String> communes = dsl.select(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE)
+                .from(INDEX_TO_COMMUNE)
+                .where(INDEX_TO_COMMUNE.INDEX.eq(DSL.any(indexIds.toArray(String[]::new))))
+                .fetchMap(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE);
+        communes.forEach((indexId, commune) -> routingCache.put(indexId, commune, stamps.get(indexId)));
+        checkNotDeleted(indexIds.stream().filter(indexId -> !communes.containsKey(indexId)).toList());
 
-            return defaultCommune;
+        List<CompletableFuture<Void>> written = new ArrayList<>();
+        for (String indexId : indexIds) {
+            if (!communes.containsKey(indexId)) {
+                String commune = placementPolicy.place(indexId);
+                communes.put(indexId, commune);
+                routingCache.put(indexId, commune, stamps.get(indexId));
+                written.add(register(indexId, commune));
+            }
+        }
+        if (awaitRegistration && !written.isEmpty()) {
+            awaitWritten(CompletableFuture.allOf(written.toArray(CompletableFuture[]::new)));
         }
+        return communes;
+    }
+
+    private CompletableFuture<Void> register(String indexId, String commune) {
+        unwrittenNames.add(indexId);
+        indexNames.add(indexId);
+        CompletableFuture<Void> written = registrations.register(indexId, commune);
+        // Without a row in the database the cached placement cannot be trusted
+        written.whenComplete((ignored, e) -> {
+            if (e != null) {
+                routingCache.invalidate(indexId);
+            } else {
+                // A reload which started before the row was written keeps the name as changed
+                indexNames.add(indexId);
+            }
+            unwrittenNames.remove(indexId);
+        });
+        return written;
+    }
+
+    private void insertRegistrations(Map<String, String> batch) {
+        InsertValuesStep2<IndexToCommuneRecord, String, String> insert =
+                dsl.insertInto(INDEX_TO_COMMUNE, INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE);
+        for (Map.Entry<String, String> registration : batch.entrySet()) {
+            insert = insert.values(registration.getKey(), registration.getValue());
+        }
+        Set<String> inserted = new HashSet<>(insert.onConflictDoNothing()
+                .returningResult(INDEX_TO_COMMUNE.INDEX)
+                .fetch(INDEX_TO_COMMUNE.INDEX));
+        // Indexes registered concurrently by another client may live elsewhere, reload them
+        for (String indexId : batch.keySet()) {
+            if (!inserted.contains(indexId)) {
+                routingCache.invalidate(indexId);
+            }
+        }
+    }
+
+    private static void awaitWritten(CompletableFuture<Void> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void openSnapshot(Duration maxWarmAge) {
+        if (!Files.exists(snapshotPath)) {
+            snapshotChanges = null;
+            return;
+        }
+        try {
+            snapshot = RoutingSnapshot.open(snapshotPath);
+        } catch (IOException e) {
+            logger.warn("Failed to open routing snapshot {}", snapshotPath, e);
+            snapshotChanges = null;
+            return;
+        }
+        Instant createdAt = snapshot.createdAt();
+        // Changes made while the SDK was down are not notified, only a recent snapshot routes requests
+        if (createdAt.isBefore(Instant.now().minus(maxWarmAge))) {
+            logger.info("Routing snapshot created at {} is kept for database outages only", createdAt);
+            snapshotChanges = null;
+            return;
+        }
+        if (hashRing == null) {
+            try {
+                // Hashed indexes load their tombstones with the overrides
+                tombstones.addAll(loadTombstones());
+            } catch (DataAccessException e) {
+                logger.warn("Failed to load pending deletions, routing snapshot is kept for database outages only", e);
+                snapshotChanges = null;
+                return;
+            }
+        }
+        snapshotWarmingUp = true;
+        logger.info("Serving {} indexes from routing snapshot created at {} until it is refreshed",
+                snapshot.size(), createdAt);
+    }
+
+    private void refreshSnapshot() {
+        try {
+            Map<String, String> mapping = dsl.select(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE)
+                    .from(INDEX_TO_COMMUNE)
+                    .fetchMap(INDEX_TO_COMMUNE.INDEX, INDEX_TO_COMMUNE.COMMUNE);
+            RoutingSnapshot.write(snapshotPath, mapping);
+            snapshot = RoutingSnapshot.open(snapshotPath);
+            endWarmUp();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to refresh routing snapshot {}", snapshotPath, e);
+        }
+    }
+
+    private void endWarmUp() {
+        snapshotWarmingUp = false;
+        snapshotChanges = null;
+    }
+
+    private void recordSnapshotChange(String indexId, String commune) {
+        Map<String, String> changes = snapshotChanges;
+        if (changes != null) {
+            changes.put(indexId, commune != null ? commune : "");
+        }
+    }
+
+    private String readWarmSnapshot(String indexId) {
+        RoutingSnapshot current = snapshot;
+        Map<String, String> changes = snapshotChanges;
+        // Snapshot may still hold indexes deleted since it was written
+        if (!snapshotWarmingUp || current == null || changes == null || tombstones.contains(indexId)) {
+            return null;
+        }
+        String changed = changes.get(indexId);
+        if (changed != null) {
+            return changed.isEmpty() ? null : changed;
+        }
+        return current.get(indexId);
+    }
+
+    private String readStaleSnapshot(String indexId) {
+        RoutingSnapshot current = snapshot;
+        String commune = current != null ? current.get(indexId) : null;
+        if (commune != null) {
+            staleReads.increment();
+            logger.debug("Database is unavailable, index {} is routed by snapshot created at {}",
+                    indexId, current.createdAt());
+        }
+        return commune;
+    }
+
+    /**
+     * Returns number of indexes routed by explicit INDEX_TO_COMMUNE rows in the hash placement mode
+     * @return Count of placement overrides
+     */
+    public int getPlacementOverrides() {
+        return overrides.size();
     }
 
     @Override
     public String getFilterField() {
         return featureName;
     }
+
+    @Override
+    public String getRouting(String indexId) {
+        return tenantRouting ? indexId : null;
+    }
+
+    @Override
+    public Query getIndexFilter(String indexId) {
+        return routingCache.filter(indexId, filterBuilder);
+    }
+
+    private Query buildIndexFilter(String indexId) {
+        return OmniaSDK.super.getIndexFilter(indexId);
+    }
+
+    /**
+     * Returns in-process cache of resolved communes with its hit/miss/eviction counters
+     * @return {@link RoutingCache} used by this SDK
+     */
+    public RoutingCache getRoutingCache() {
+        return routingCache;
+    }
+
+    /**
+     * Returns number of lookups that were served by joining an identical lookup already in flight
+     * @return Count of deduplicated database lookups
+     */
+    public long getDeduplicatedLookups() {
+        return lookups.deduplicatedCount();
+    }
+
+    /**
+     * Returns number of lookups that were answered from the routing snapshot
+     * because the database was unavailable, such answers may be stale
+     * @return Count of stale reads
+     */
+    public long getStaleReads() {
+        return staleReads.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        lookupExecutor.shutdown();
+        registrations.close();
+        if (mappingChangeListener != null) {
+            mappingChangeListener.close();
+        }
+        dataSource.close();
+    }
+
+    private class RoutingCacheHandler implements MappingChangeListener.Handler {
+        // Called on the listener thread only
+        private boolean connectedBefore;
+
+        @Override
+        public void onUpdate(String indexId, String commune) {
+            recordSnapshotChange(indexId, commune);
+            routingCache.update(indexId, commune);
+            indexNames.add(indexId);
+        }
+
+        @Override
+        public void onDelete(String indexId) {
+            recordSnapshotChange(indexId, null);
+            routingCache.invalidate(indexId);
+            indexNames.remove(indexId);
+        }
+
+        @Override
+        public void onReconnect() {
+            // Notifications are recorded since startup, so the first connect keeps the warm snapshot.
+            // After a reconnect some may have been missed and the snapshot cannot be corrected anymore
+            if (connectedBefore) {
+                endWarmUp();
+            }
+            connectedBefore = true;
+            routingCache.invalidateAll();
+            refreshIndexNames();
+        }
+    }
+
+    private class OverridesHandler implements MappingChangeListener.Handler {
+        @Override
+        public void onUpdate(String indexId, String commune) {
+            journalPlacement(indexId);
+            overrides.put(indexId, commune);
+        }
+
+        @Override
+        public void onDelete(String indexId) {
+            journalPlacement(indexId);
+            overrides.remove(indexId);
+        }
+
+        @Override
+        public void onReconnect() {
+            refreshOverrides();
+        }
+    }
 }
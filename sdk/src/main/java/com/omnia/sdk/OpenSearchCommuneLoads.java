@@ -0,0 +1,44 @@
+package com.omnia.sdk;
+
+import org.opensearch.client.opensearch.OpenSearchClient;
+import org.opensearch.client.opensearch.cat.IndicesRequest;
+import org.opensearch.client.opensearch.cat.indices.IndicesRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Reads number of documents in every commune with the cat indices API
+ */
+public class OpenSearchCommuneLoads implements Supplier<Map<String, Long>> {
+    private static final String COMMUNE_PREFIX = "commune_";
+
+    private final OpenSearchClient client;
+
+    /**
+     * @param client Client of the cluster holding communes, it must not be wrapped with OmniaTransport
+     */
+    public OpenSearchCommuneLoads(OpenSearchClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Map<String, Long> get() {
+        // Cat request builders are not typed as ObjectBuilder<IndicesRequest>, the request is built explicitly
+        IndicesRequest request = new IndicesRequest.Builder().index(COMMUNE_PREFIX + "*").build();
+        try {
+            Map<String, Long> loads = new HashMap<>();
+            for (IndicesRecord record : client.cat().indices(request).valueBody()) {
+                if (record.index() != null && record.index().startsWith(COMMUNE_PREFIX)) {
+                    loads.put(record.index(), record.docsCount() != null ? Long.parseLong(record.docsCount()) : 0L);
+                }
+            }
+            return loads;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read commune loads", e);
+        }
+    }
+}
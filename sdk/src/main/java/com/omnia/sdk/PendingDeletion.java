@@ -0,0 +1,10 @@
+package com.omnia.sdk;
+
+/**
+ * Deleted logical index whose documents are still being removed
+ * @param indexId Deleted logical index
+ * @param commune Commune holding its documents
+ * @param taskId Task removing the documents, null if no task was recorded
+ */
+public record PendingDeletion(String indexId, String commune, String taskId) {
+}
@@ -0,0 +1,31 @@
+package com.omnia.sdk;
+
+/**
+ * Chooses commune for a logical index that is not mapped yet.
+ * The choice is registered in INDEX_TO_COMMUNE, so it is made once per index.
+ */
+@FunctionalInterface
+public interface PlacementPolicy {
+    String DEFAULT_COMMUNE = "commune_main";
+
+    /**
+     * Places new index
+     * @param indexId Logical index identifier
+     * @return Commune ID for the index
+     */
+    String place(String indexId);
+
+    /**
+     * Reloads state the policy decides on, called periodically from the SDK background thread
+     */
+    default void refresh() {
+    }
+
+    /**
+     * Policy placing every new index to {@link #DEFAULT_COMMUNE}
+     * @return Default placement policy
+     */
+    static PlacementPolicy defaultCommune() {
+        return indexId -> DEFAULT_COMMUNE;
+    }
+}
@@ -0,0 +1,152 @@
+package com.omnia.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind queue of new index to commune registrations.
+ * Registrations are collected for a short linger interval and written
+ * with a single statement, so that onboarding bursts do not turn into
+ * thousands of single-row inserts.
+ */
+public class RegistrationBatcher implements Runnable, AutoCloseable {
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistrationBatcher.class);
+
+    private final BlockingQueue<Registration> queue = new LinkedBlockingQueue<>();
+    private final Consumer<Map<String, String>> writer;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param writer Writes a batch of index to commune registrations
+     * @param maxBatchSize Maximum number of registrations written at once
+     * @param lingerMillis How long to wait for more registrations before writing a batch
+     */
+    public RegistrationBatcher(Consumer<Map<String, String>> writer, int maxBatchSize, long lingerMillis) {
+        this.writer = writer;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Registration batcher is already started");
+        }
+        thread = new Thread(this, "omnia-registration-batcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues registration of the index
+     * @param indexId Logical index identifier
+     * @param commune Commune the index is placed to
+     * @return Future completed once the registration is written to the database
+     */
+    public CompletableFuture<Void> register(String indexId, String commune) {
+        Registration registration = new Registration(indexId, commune, new CompletableFuture<>());
+        // Checked under the lock close() stops under, no registration is queued once the writer may have exited
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException("Registration batcher is closed");
+            }
+            queue.add(registration);
+        }
+        return registration.written;
+    }
+
+    @Override
+    public void run() {
+        List<Registration> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Registration first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Registration next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Registration> batch) {
+        Map<String, String> registrations = new LinkedHashMap<>();
+        for (Registration registration : batch) {
+            registrations.putIfAbsent(registration.indexId, registration.commune);
+        }
+        try {
+            writer.accept(registrations);
+            batch.forEach(registration -> registration.written.complete(null));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to register {} indexes", registrations.size(), e);
+            batch.forEach(registration -> registration.written.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Stops accepting registrations and writes the queued ones.
+     * Registrations the writer did not take before it stopped fail
+     */
+    @Override
+    public void close() {
+        Thread writerThread;
+        synchronized (this) {
+            running = false;
+            writerThread = thread;
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (writerThread.isAlive()) {
+                // The writer is still flushing and drains the queue before it exits
+                return;
+            }
+        }
+        List<Registration> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        if (!leftovers.isEmpty()) {
+            logger.warn("Dropping {} registrations queued while closing", leftovers.size());
+            IllegalStateException closed = new IllegalStateException("Registration batcher is closed");
+            leftovers.forEach(registration -> registration.written.completeExceptionally(closed));
+        }
+    }
+
+    private record Registration(String indexId, String commune, CompletableFuture<Void> written) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.omnia.sdk;
+
+import java.util.List;
+
+/**
+ * Rendezvous (highest random weight) placement of indexes on a fixed ring of communes.
+ * Every index goes to the commune with the highest hash of (index, commune),
+ * so adding a commune to the ring moves only the indexes that the new commune wins.
+ * Hashes do not depend on the JVM, all clients place an index the same way.
+ */
+public class RendezvousHashing implements PlacementPolicy {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String[] communes;
+    private final long[] seeds;
+
+    public RendezvousHashing(List<String> communes) {
+        if (communes == null || communes.isEmpty()) {
+            throw new IllegalArgumentException("Hash ring must contain at least one commune");
+        }
+        this.communes = communes.toArray(String[]::new);
+        this.seeds = new long[this.communes.length];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = hash(this.communes[i]);
+        }
+    }
+
+    /**
+     * Selects commune for the index
+     * @param indexId Logical index identifier
+     * @return Commune ID from the ring
+     */
+    public String select(String indexId) {
+        long key = hash(indexId);
+        int best = 0;
+        long bestWeight = mix(key ^ seeds[0]);
+        for (int i = 1; i < seeds.length; i++) {
+            long weight = mix(key ^ seeds[i]);
+            if (Long.compareUnsigned(weight, bestWeight) > 0) {
+                best = i;
+                bestWeight = weight;
+            }
+        }
+        return communes[best];
+    }
+
+    @Override
+    public String place(String indexId) {
+        return select(indexId);
+    }
+
+    public List<String> communes() {
+        return List.of(communes);
+    }
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,276 @@
+package com.omnia.sdk;
+
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Size-bounded in-process cache of index to commune resolutions.
+ * Eviction is frequency-aware: when the cache overflows, the least frequently
+ * used entry of a small sample is dropped, the sample is taken by a cursor that
+ * walks the cache across evictions. New entries count their load as one use.
+ * Once a whole cache worth of entries has been evicted the frequencies of the
+ * survivors are halved, so that tenants which stopped being hot age out over time.
+ * A lookup of a cached index does not allocate.
+ * Entries also hold the index filter query, so that hot indexes reuse one immutable instance.
+ * <p>
+ * Loaders take a {@link #stamp} of the index before reading the database and pass it to
+ * {@link #put}. Every change notification advances the stamp, so a loader that read the
+ * index before a notification cannot cache what it read after the notification was applied.
+ */
+public class RoutingCache {
+    private static final int EVICTION_SAMPLE = 16;
+    // Stamps are kept per stripe of indexes, a change of one index rejects puts of its stripe
+    private static final int STAMP_STRIPES = 1024;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Guarded by evictionLock
+    private Iterator<String> evictionCursor;
+    private int evictedSinceAging = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries Maximum number of cached indexes, 0 disables caching
+     * @param ttl Time after which an entry is reloaded, zero means entries never expire
+     */
+    public RoutingCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    RoutingCache(int maxEntries, Duration ttl, LongSupplier clock) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns cached commune for the index
+     * @param indexId Logical index identifier
+     * @return Commune ID or null if the index is not cached or its entry has expired
+     */
+    public String get(String indexId) {
+        Entry entry = entries.get(indexId);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && clock.getAsLong() - entry.loadedAt >= ttlNanos) {
+            entries.remove(indexId, entry);
+            misses.increment();
+            return null;
+        }
+        entry.touch();
+        hits.increment();
+        return entry.commune;
+    }
+
+    /**
+     * Returns the current stamp of the index, taken before its commune is read from the database
+     * @param indexId Logical index identifier
+     * @return Stamp to pass to {@link #put}
+     */
+    public long stamp(String indexId) {
+        return stamps.get(stripe(indexId));
+    }
+
+    /**
+     * Stores resolved commune for the index unless a change of the index was applied since the stamp
+     * @param indexId Logical index identifier
+     * @param commune Commune ID the index is stored in
+     * @param stamp Stamp of the index taken before the commune was read
+     * @return true if the commune was cached, false if it may be stale
+     */
+    public boolean put(String indexId, String commune, long stamp) {
+        if (maxEntries == 0) {
+            return false;
+        }
+        int stripe = stripe(indexId);
+        boolean[] stored = new boolean[1];
+        // Notifications change the index under the same map lock, the check and the store are atomic
+        entries.compute(indexId, (key, entry) -> {
+            if (stamps.get(stripe) != stamp) {
+                return entry;
+            }
+            stored[0] = true;
+            return new Entry(commune, clock.getAsLong());
+        });
+        if (stored[0] && entries.size() > maxEntries) {
+            evict();
+        }
+        return stored[0];
+    }
+
+    /**
+     * Replaces commune of the index if it is cached, uncached indexes are left alone.
+     * Loads of the index started before the update are not cached
+     * @param indexId Logical index identifier
+     * @param commune New commune ID of the index
+     */
+    public void update(String indexId, String commune) {
+        int stripe = stripe(indexId);
+        entries.compute(indexId, (key, entry) -> {
+            stamps.incrementAndGet(stripe);
+            if (entry == null) {
+                return null;
+            }
+            Entry updated = new Entry(commune, clock.getAsLong());
+            // The filter depends on the index only
+            updated.filter = entry.filter;
+            updated.frequency = entry.frequency;
+            return updated;
+        });
+    }
+
+    /**
+     * Returns filter query of the index, it is built once and kept while the index is cached
+     * @param indexId Logical index identifier
+     * @param builder Builds the filter, called for uncached indexes on every call
+     * @return Filter {@link Query} of the index
+     */
+    public Query filter(String indexId, Function<String, Query> builder) {
+        Entry entry = entries.get(indexId);
+        if (entry == null) {
+            return builder.apply(indexId);
+        }
+        Query filter = entry.filter;
+        if (filter == null) {
+            // Concurrent callers may build it twice, both instances are equal
+            filter = builder.apply(indexId);
+            entry.filter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * Removes the index from the cache, so the next lookup goes to the database.
+     * Loads of the index started before the invalidation are not cached
+     * @param indexId Logical index identifier
+     */
+    public void invalidate(String indexId) {
+        int stripe = stripe(indexId);
+        entries.compute(indexId, (key, entry) -> {
+            stamps.incrementAndGet(stripe);
+            return null;
+        });
+    }
+
+    /**
+     * Removes all cached indexes, loads started before are not cached
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private static int stripe(String indexId) {
+        int hash = indexId.hashCode();
+        return (hash ^ (hash >>> 16)) & (STAMP_STRIPES - 1);
+    }
+
+    private void evict() {
+        // A single thread trims the cache, others keep serving lookups
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int removed = 0;
+            for (int excess = entries.size() - maxEntries; excess > 0; excess--) {
+                String victim = null;
+                Entry victimEntry = null;
+                for (int i = 0; i < EVICTION_SAMPLE; i++) {
+                    String indexId = nextEvictionCandidate();
+                    Entry entry = indexId != null ? entries.get(indexId) : null;
+                    if (entry != null && (victimEntry == null || entry.frequency < victimEntry.frequency)) {
+                        victim = indexId;
+                        victimEntry = entry;
+                    }
+                }
+                if (victim != null && entries.remove(victim, victimEntry)) {
+                    removed++;
+                }
+            }
+            evictions.add(removed);
+            evictedSinceAging += removed;
+            if (evictedSinceAging >= maxEntries) {
+                for (Entry entry : entries.values()) {
+                    entry.frequency = entry.frequency >>> 1;
+                }
+                evictedSinceAging = 0;
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private String nextEvictionCandidate() {
+        // The cursor is weakly consistent, it tolerates concurrent changes and restarts at the end
+        if (evictionCursor == null || !evictionCursor.hasNext()) {
+            evictionCursor = entries.keySet().iterator();
+            if (!evictionCursor.hasNext()) {
+                return null;
+            }
+        }
+        return evictionCursor.next();
+    }
+
+    private static final class Entry {
+        private static final int MAX_FREQUENCY = 1 << 16;
+        // The load that created the entry counts as a use, so it is not the first one evicted
+        private static final int INITIAL_FREQUENCY = 1;
+
+        final String commune;
+        final long loadedAt;
+        // Updated without synchronization: an occasionally lost increment is fine for eviction
+        volatile int frequency = INITIAL_FREQUENCY;
+        volatile Query filter;
+
+        Entry(String commune, long loadedAt) {
+            this.commune = commune;
+            this.loadedAt = loadedAt;
+        }
+
+        void touch() {
+            int current = frequency;
+            if (current < MAX_FREQUENCY) {
+                frequency = current + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.omnia.sdk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped copy of the index to commune mapping.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header:   magic, version, entry count, commune count, creation time (millis)
+ * offsets:  int per commune, int per entry, positions in the file
+ * communes: [length][UTF-8 bytes] per distinct commune
+ * entries:  [length][UTF-8 index bytes][commune number] sorted by index bytes
+ * </pre>
+ * Lookups binary search the mapped entries, so the table stays off-heap.
+ */
+public final class RoutingSnapshot {
+    private static final int MAGIC = 0x4F4D4E53;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+    private final int entryOffsets;
+    private final String[] communes;
+    private final Instant createdAt;
+
+    private RoutingSnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a routing snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported routing snapshot version: " + buffer.getInt(4));
+        }
+        this.entryCount = buffer.getInt(8);
+        int communeCount = buffer.getInt(12);
+        this.createdAt = Instant.ofEpochMilli(buffer.getLong(16));
+        if (entryCount < 0 || communeCount < 0
+                || HEADER_SIZE + ((long) communeCount + entryCount) * Integer.BYTES > buffer.capacity()) {
+            throw new IOException("Corrupt routing snapshot: offset table exceeds the file");
+        }
+        this.entryOffsets = HEADER_SIZE + communeCount * Integer.BYTES;
+
+        // Distinct communes are few, keep them decoded to avoid creating strings on every lookup
+        this.communes = new String[communeCount];
+        for (int i = 0; i < communeCount; i++) {
+            int position = buffer.getInt(HEADER_SIZE + i * Integer.BYTES);
+            checkRecord(position, 0);
+            communes[i] = readString(position);
+        }
+        // Lookups trust the offsets, a truncated file must fail here and not on a request
+        for (int i = 0; i < entryCount; i++) {
+            int position = buffer.getInt(entryOffsets + i * Integer.BYTES);
+            checkRecord(position, Integer.BYTES);
+            int commune = buffer.getInt(position + Integer.BYTES + buffer.getInt(position));
+            if (commune < 0 || commune >= communeCount) {
+                throw new IOException("Corrupt routing snapshot: entry " + i + " has unknown commune " + commune);
+            }
+        }
+    }
+
+    /**
+     * Checks that a length-prefixed record and the trailing bytes after it lie within the file
+     */
+    private void checkRecord(int position, int trailingBytes) throws IOException {
+        if (position < HEADER_SIZE || (long) position + Integer.BYTES > buffer.capacity()) {
+            throw new IOException("Corrupt routing snapshot: record offset " + position + " is out of the file");
+        }
+        int length = buffer.getInt(position);
+        if (length < 0 || (long) position + Integer.BYTES + length + trailingBytes > buffer.capacity()) {
+            throw new IOException("Corrupt routing snapshot: record at " + position + " exceeds the file");
+        }
+    }
+
+    /**
+     * Maps existing snapshot file read-only
+     * @param path Snapshot file
+     * @return Opened snapshot
+     * @throws IOException if the file is missing, is not a routing snapshot or is corrupt
+     */
+    public static RoutingSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new RoutingSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes mapping to the snapshot file. The file is replaced atomically,
+     * so snapshots mapped by other readers stay valid
+     * @param path Snapshot file
+     * @param mapping Index to commune mapping
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Map<String, String> mapping) throws IOException {
+        Map<String, Integer> communeNumbers = new HashMap<>();
+        byte[][] communeBytes = new byte[mapping.size()][];
+        byte[][] keys = new byte[mapping.size()][];
+        int[] keyCommunes = new int[mapping.size()];
+
+        Integer[] order = new Integer[mapping.size()];
+        int count = 0;
+        for (Map.Entry<String, String> entry : mapping.entrySet()) {
+            Integer number = communeNumbers.get(entry.getValue());
+            if (number == null) {
+                number = communeNumbers.size();
+                communeNumbers.put(entry.getValue(), number);
+                communeBytes[number] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            }
+            keys[count] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            keyCommunes[count] = number;
+            order[count] = count;
+            count++;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        int communeCount = communeNumbers.size();
+        long size = HEADER_SIZE + (long) (communeCount + count) * Integer.BYTES;
+        for (int i = 0; i < communeCount; i++) {
+            size += Integer.BYTES + communeBytes[i].length;
+        }
+        for (int i = 0; i < count; i++) {
+            size += 2L * Integer.BYTES + keys[i].length;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Routing snapshot is too large: " + size + " bytes");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(communeCount).putLong(System.currentTimeMillis());
+        int position = HEADER_SIZE + (communeCount + count) * Integer.BYTES;
+        for (int i = 0; i < communeCount; i++) {
+            out.putInt(position);
+            position += Integer.BYTES + communeBytes[i].length;
+        }
+        for (int i = 0; i < count; i++) {
+            out.putInt(position);
+            position += 2 * Integer.BYTES + keys[order[i]].length;
+        }
+        for (int i = 0; i < communeCount; i++) {
+            out.putInt(communeBytes[i].length).put(communeBytes[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            int entry = order[i];
+            out.putInt(keys[entry].length).put(keys[entry]).putInt(keyCommunes[entry]);
+        }
+        out.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Finds commune of the index in the snapshot
+     * @param indexId Logical index identifier
+     * @return Commune ID or null if the index is not in the snapshot
+     */
+    public String get(String indexId) {
+        byte[] key = indexId.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = buffer.getInt(entryOffsets + middle * Integer.BYTES);
+            int comparison = compare(position, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                int length = buffer.getInt(position);
+                return communes[buffer.getInt(position + Integer.BYTES + length)];
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public Instant createdAt() {
+        return createdAt;
+    }
+
+    private int compare(int position, byte[] key) {
+        int length = buffer.getInt(position);
+        int start = position + Integer.BYTES;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(start + i), key[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String readString(int position) {
+        byte[] bytes = new byte[buffer.getInt(position)];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+package com.omnia.sdk;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader,
+ * callers arriving while it is in flight wait for and share its result.
+ * @param <K> Key type
+ * @param <V> Loaded value type
+ */
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /**
+     * Loads value for the key, or joins a load of the same key that is already running
+     * @param key Key to load
+     * @param loader Function that loads the value
+     * @return Loaded value
+     */
+    public V execute(K key, Function<K, V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            deduplicated.increment();
+            return await(existing);
+        }
+        try {
+            V value = loader.apply(key);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Loads values for several keys. Keys that are already in flight are joined,
+     * the remaining ones are loaded with a single call of the loader
+     * @param keys Keys to load
+     * @param loader Function that loads values for a batch of keys, it must return every requested key
+     * @return Map from key to its value, ordered as keys
+     */
+    public Map<K, V> executeAll(Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> joined = new HashMap<>();
+        for (K key : keys) {
+            if (owned.containsKey(key) || joined.containsKey(key)) {
+                continue;
+            }
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                owned.put(key, future);
+            } else {
+                deduplicated.increment();
+                joined.put(key, existing);
+            }
+        }
+
+        Map<K, V> result = new LinkedHashMap<>();
+        if (!owned.isEmpty()) {
+            try {
+                Map<K, V> loaded = loader.apply(List.copyOf(owned.keySet()));
+                owned.forEach((key, future) -> future.complete(loaded.get(key)));
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach(inFlight::remove);
+            }
+        }
+        for (K key : keys) {
+            CompletableFuture<V> future = owned.containsKey(key) ? owned.get(key) : joined.get(key);
+            result.put(key, await(future));
+        }
+        return result;
+    }
+
+    /**
+     * Returns number of loads that were served by joining a load already in flight
+     * @return Count of deduplicated loads
+     */
+    public long deduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
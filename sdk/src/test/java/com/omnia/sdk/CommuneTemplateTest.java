@@ -0,0 +1,36 @@
+package com.omnia.sdk;
+
+import com.omnia.common.config.Config;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch.indices.CreateIndexRequest;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommuneTemplateTest {
+
+    private static CreateIndexRequest template(String featureName) {
+        Config config = new Config();
+        config.setFeatureName(featureName);
+        return CommuneTemplate.of("commune_1", config);
+    }
+
+    @Test
+    void testCommuneIsSortedByFeatureField() {
+        CreateIndexRequest request = template("omnia_id");
+
+        assertEquals(List.of("omnia_id"), request.settings().sort().field());
+        assertEquals(Set.of("omnia_id", CommuneTemplate.FILTER_FIELD), request.mappings().properties().keySet());
+    }
+
+    @Test
+    void testFeatureFieldNamedLikeFilterFieldIsListedOnce() {
+        CreateIndexRequest request = template(CommuneTemplate.FILTER_FIELD);
+
+        assertEquals(List.of(CommuneTemplate.FILTER_FIELD), request.settings().sort().field());
+        assertEquals(1, request.settings().sort().order().size());
+        assertEquals(Set.of(CommuneTemplate.FILTER_FIELD), request.mappings().properties().keySet());
+    }
+}
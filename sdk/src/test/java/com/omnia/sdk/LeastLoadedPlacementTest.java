@@ -0,0 +1,50 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LeastLoadedPlacementTest {
+
+    @Test
+    void testDefaultCommuneBeforeRefresh() {
+        LeastLoadedPlacement placement = new LeastLoadedPlacement(() -> Map.of("commune_a", 10L));
+        assertEquals(PlacementPolicy.DEFAULT_COMMUNE, placement.place("tenant"));
+    }
+
+    @Test
+    void testPlacesToLeastLoadedCommune() {
+        LeastLoadedPlacement placement = new LeastLoadedPlacement(
+                () -> Map.of("commune_a", 5000L, "commune_b", 100L, "commune_c", 3000L));
+        placement.refresh();
+        assertEquals("commune_b", placement.place("tenant"));
+    }
+
+    @Test
+    void testBurstIsSpreadBetweenRefreshes() {
+        LeastLoadedPlacement placement = new LeastLoadedPlacement(
+                () -> Map.of("commune_a", 0L, "commune_b", 0L), 10);
+        placement.refresh();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            counts.merge(placement.place("tenant-" + i), 1, Integer::sum);
+        }
+        assertEquals(50, counts.get("commune_a"));
+        assertEquals(50, counts.get("commune_b"));
+    }
+
+    @Test
+    void testRefreshReplacesEstimates() {
+        Map<String, Long> loads = new HashMap<>(Map.of("commune_a", 0L, "commune_b", 1000L));
+        LeastLoadedPlacement placement = new LeastLoadedPlacement(() -> loads);
+        placement.refresh();
+        assertEquals("commune_a", placement.place("tenant-1"));
+
+        loads.put("commune_a", 2000L);
+        placement.refresh();
+        assertEquals("commune_b", placement.place("tenant-2"));
+    }
+}
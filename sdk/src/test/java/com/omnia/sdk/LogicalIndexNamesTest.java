@@ -0,0 +1,63 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogicalIndexNamesTest {
+
+    private LogicalIndexNames names(String... indexIds) {
+        LogicalIndexNames names = new LogicalIndexNames();
+        names.reload(() -> List.of(indexIds), name -> false);
+        return names;
+    }
+
+    @Test
+    void testPrefixPatternMatchesRange() {
+        LogicalIndexNames names = names("tenant-41-logs-1", "tenant-42-logs-1", "tenant-42-logs-2", "tenant-42-metrics", "tenant-43-logs-1");
+
+        assertEquals(List.of("tenant-42-logs-1", "tenant-42-logs-2"), names.match("tenant-42-logs-*"));
+        assertEquals(List.of(), names.match("tenant-44-*"));
+        assertEquals(5, names.match("*").size());
+    }
+
+    @Test
+    void testInnerWildcards() {
+        LogicalIndexNames names = names("tenant-41-logs-1", "tenant-42-logs-1", "tenant-42-metrics", "other-42-logs");
+
+        assertEquals(List.of("tenant-41-logs-1", "tenant-42-logs-1"), names.match("tenant-*-logs-*"));
+        assertEquals(List.of("other-42-logs", "tenant-42-logs-1"), names.match("*-42-logs*"));
+        assertEquals(List.of("tenant-42-metrics"), names.match("tenant-*s"));
+    }
+
+    @Test
+    void testNamesAreUpdated() {
+        LogicalIndexNames names = names("tenant-1");
+        names.add("tenant-2");
+        names.remove("tenant-1");
+
+        assertEquals(List.of("tenant-2"), names.match("tenant-*"));
+        assertEquals(List.of("tenant-2"), names.match("tenant-2"));
+        assertTrue(LogicalIndexNames.isPattern("tenant-*"));
+        assertFalse(LogicalIndexNames.isPattern("tenant-1"));
+    }
+
+    @Test
+    void testReloadKeepsConcurrentChanges() {
+        LogicalIndexNames names = names("tenant-1", "tenant-2", "tenant-3");
+
+        // tenant-4 is registered and tenant-2 deleted while the load runs, tenant-5 waits to be written
+        names.add("tenant-5");
+        names.reload(() -> {
+            names.add("tenant-4");
+            names.remove("tenant-2");
+            return List.of("tenant-2", "tenant-3");
+        }, name -> name.equals("tenant-5"));
+
+        assertEquals(List.of("tenant-3", "tenant-4", "tenant-5"), names.match("tenant-*"));
+    }
+}
@@ -7,6 +7,7 @@ import com.omnia.common.config.db.PostgresqlParams;
 import org.apache.http.HttpHost;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.opensearch.client.RestClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
@@ -22,14 +23,22 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Testcontainers(disabledWithoutDocker = true)
 public class OmniaSDKPostgreSQLTest {
@@ -58,6 +67,23 @@ public class OmniaSDKPostgreSQLTest {
             stmt.execute("CREATE TABLE \"INDEX_TO_COMMUNE\" (\"index\" VARCHAR PRIMARY KEY, commune VARCHAR)");
             stmt.execute("INSERT INTO \"INDEX_TO_COMMUNE\" (\"index\", commune) VALUES ('123', 'commune')");
             stmt.execute("INSERT INTO \"INDEX_TO_COMMUNE\" (\"index\", commune) VALUES ('456', 'commune')");
+            stmt.execute("CREATE TABLE \"INDEX_TOMBSTONE\" (\"index\" VARCHAR PRIMARY KEY, commune VARCHAR NOT NULL, " +
+                    "task_id VARCHAR, deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, completed_at TIMESTAMP, " +
+                    "lease_owner VARCHAR, lease_until TIMESTAMP)");
+            stmt.execute("""
+                    CREATE FUNCTION notify_index_to_commune() RETURNS TRIGGER AS $$
+                    BEGIN
+                        IF TG_OP = 'DELETE' THEN
+                            PERFORM pg_notify('omnia_index_to_commune', OLD."index");
+                        ELSE
+                            PERFORM pg_notify('omnia_index_to_commune', NEW."index" || E'\\n' || NEW."commune");
+                        END IF;
+                        RETURN NULL;
+                    END;
+                    $$ LANGUAGE plpgsql
+                    """);
+            stmt.execute("CREATE TRIGGER index_to_commune_notify AFTER INSERT OR UPDATE OR DELETE ON \"INDEX_TO_COMMUNE\" " +
+                    "FOR EACH ROW EXECUTE FUNCTION notify_index_to_commune()");
         }
 
         AppConfig appConfig = createTestAppConfig();
@@ -127,6 +153,16 @@ public class OmniaSDKPostgreSQLTest {
         assertEquals("commune", communeId);
     }
 
+    @Test
+    void testTransformIndexIds() {
+        Map<String, String> communes = sdk.transformIndexIds(List.of("123", "456", "777"));
+        assertEquals(List.of("123", "456", "777"), List.copyOf(communes.keySet()));
+        assertEquals("commune", communes.get("123"));
+        assertEquals("commune", communes.get("456"));
+        assertEquals("commune_main", communes.get("777"));
+        assertEquals("commune_main", sdk.transformIndexId("777"));
+    }
+
     @Test
     void testCreateSearchRequestBuilder() throws IOException {
         SearchRequest.Builder requestBuilder = sdk.createSearchRequestBuilder("123");
@@ -156,6 +192,94 @@ public class OmniaSDKPostgreSQLTest {
         assertEquals("commune_main", sdk.transformIndexId("666"));
     }
 
+    @Test
+    void testMappingChangeInvalidatesCache() throws SQLException, InterruptedException {
+        try (Connection conn = DriverManager.getConnection(
+                postgres.getJdbcUrl(),
+                postgres.getUsername(),
+                postgres.getPassword());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO \"INDEX_TO_COMMUNE\" (\"index\", commune) VALUES ('789', 'commune')");
+            assertEquals("commune", sdk.transformIndexId("789"));
+
+            stmt.execute("UPDATE \"INDEX_TO_COMMUNE\" SET commune = 'commune_moved' WHERE \"index\" = '789'");
+        }
+
+        String communeId = sdk.transformIndexId("789");
+        for (int i = 0; i < 50 && !"commune_moved".equals(communeId); i++) {
+            Thread.sleep(100);
+            communeId = sdk.transformIndexId("789");
+        }
+        assertEquals("commune_moved", communeId);
+    }
+
+    @Test
+    void testHashPlacement() throws SQLException {
+        AppConfig appConfig = createTestAppConfig();
+        appConfig.getConfig().setPlacementMode("hash");
+        appConfig.getConfig().setHashRing(List.of("commune_x", "commune_y"));
+        try (OmniaSDKPostgreSQL hashSdk = new OmniaSDKPostgreSQL(appConfig)) {
+            // Moved indexes keep their commune, others are placed on the ring
+            assertEquals("commune", hashSdk.transformIndexId("123"));
+            String communeId = hashSdk.transformIndexId("hashed");
+            assertTrue(List.of("commune_x", "commune_y").contains(communeId));
+            assertEquals(communeId, new RendezvousHashing(List.of("commune_x", "commune_y")).select("hashed"));
+        }
+
+        try (Connection conn = DriverManager.getConnection(
+                postgres.getJdbcUrl(),
+                postgres.getUsername(),
+                postgres.getPassword());
+             Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery("SELECT count(*) FROM \"INDEX_TO_COMMUNE\" WHERE \"index\" = 'hashed'")) {
+            resultSet.next();
+            assertEquals(0, resultSet.getInt(1), "Hashed indexes should not be registered");
+        }
+    }
+
+    @Test
+    void testDeletedHashedIndexFailsAsyncLookup() {
+        AppConfig appConfig = createTestAppConfig();
+        appConfig.getConfig().setPlacementMode("hash");
+        appConfig.getConfig().setHashRing(List.of("commune_x", "commune_y"));
+        try (OmniaSDKPostgreSQL hashSdk = new OmniaSDKPostgreSQL(appConfig)) {
+            hashSdk.tombstoneIndexesAsync(List.of("hashed_deleted")).toCompletableFuture().join();
+
+            // The lookup fails its stage, the caller does not get the exception
+            CompletionStage<String> commune = hashSdk.transformIndexIdAsync("hashed_deleted");
+            CompletionException e = assertThrows(CompletionException.class, () -> commune.toCompletableFuture().join());
+            assertInstanceOf(IndexDeletedException.class, e.getCause());
+
+            CompletionStage<Map<String, String>> communes = hashSdk.transformIndexIdsAsync(List.of("hashed", "hashed_deleted"));
+            e = assertThrows(CompletionException.class, () -> communes.toCompletableFuture().join());
+            assertInstanceOf(IndexDeletedException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void testWarmSnapshotIsServedWithListener(@TempDir Path directory) throws Exception {
+        Path snapshotPath = directory.resolve("routing.snapshot");
+        RoutingSnapshot.write(snapshotPath, Map.of("123", "commune_snapshot"));
+        AppConfig appConfig = createTestAppConfig();
+        appConfig.getConfig().setSnapshotPath(snapshotPath.toString());
+
+        try (Connection conn = DriverManager.getConnection(
+                postgres.getJdbcUrl(),
+                postgres.getUsername(),
+                postgres.getPassword());
+             Statement stmt = conn.createStatement()) {
+            // Holds back the snapshot refresh, so that the SDK keeps warming up
+            conn.setAutoCommit(false);
+            stmt.execute("LOCK TABLE \"INDEX_TO_COMMUNE\" IN ACCESS EXCLUSIVE MODE");
+            try (OmniaSDKPostgreSQL snapshotSdk = new OmniaSDKPostgreSQL(appConfig)) {
+                // Give the mapping change listener time to connect
+                Thread.sleep(1000);
+                assertEquals("commune_snapshot", snapshotSdk.transformIndexId("123"));
+                conn.rollback();
+            }
+        }
+    }
+
     @Test
     void testGetFilterField() {
         assertEquals(FEATURE_NAME, sdk.getFilterField(), "Filter field should match feature name from config");
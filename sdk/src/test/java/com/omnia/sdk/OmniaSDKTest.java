@@ -0,0 +1,88 @@
+package com.omnia.sdk;
+
+import org.opensearch.client.opensearch._types.FieldValue;
+import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.query_dsl.TermsQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OmniaSDKTest {
+    private static final String FEATURE_NAME = "real_index";
+
+    private final OmniaSDK sdk = new OmniaSDK() {
+        @Override
+        public String transformIndexId(String indexId) {
+            return "commune_main";
+        }
+
+        @Override
+        public String getFilterField() {
+            return FEATURE_NAME;
+        }
+    };
+
+    private final Query userQuery = Query.of(q -> q.matchAll(m -> m));
+
+    @Test
+    void testPatternsMatchNothingWithoutRegistry() {
+        assertEquals(List.of("123", "456"), sdk.expandIndexPatterns(List.of("123", "1*", "456")));
+        assertEquals(List.of(), sdk.expandIndexPatterns(List.of("1*")));
+        List<String> plain = List.of("123");
+        assertSame(plain, sdk.expandIndexPatterns(plain));
+    }
+
+    @Test
+    void testSingleIndexFilter() {
+        Query query = sdk.addIndexFilter(userQuery, Map.of("123", "commune_a"));
+        BoolQuery bool = query.bool();
+        assertEquals(List.of(userQuery), bool.must());
+        assertEquals("123", bool.filter().get(0).term().value().stringValue());
+    }
+
+    @Test
+    void testIndexesOfOneCommune() {
+        Map<String, String> communes = new LinkedHashMap<>();
+        communes.put("123", "commune_a");
+        communes.put("456", "commune_a");
+
+        BoolQuery bool = sdk.addIndexFilter(userQuery, communes).bool();
+        assertEquals(1, bool.filter().size());
+        assertEquals(FEATURE_NAME, bool.filter().get(0).terms().field());
+        assertEquals(List.of("123", "456"), values(bool.filter().get(0).terms()));
+    }
+
+    @Test
+    void testIndexesGroupedByCommune() {
+        Map<String, String> communes = new LinkedHashMap<>();
+        communes.put("123", "commune_a");
+        communes.put("456", "commune_b");
+        communes.put("789", "commune_a");
+
+        BoolQuery bool = sdk.addIndexFilter(userQuery, communes).bool();
+        BoolQuery anyCommune = bool.filter().get(0).bool();
+        assertEquals(2, anyCommune.should().size());
+
+        BoolQuery first = anyCommune.should().get(0).bool();
+        assertEquals("commune_a", first.filter().get(0).term().value().stringValue());
+        assertEquals(List.of("123", "789"), values(first.filter().get(1).terms()));
+
+        BoolQuery second = anyCommune.should().get(1).bool();
+        assertEquals("commune_b", second.filter().get(0).term().value().stringValue());
+        assertEquals(List.of("456"), values(second.filter().get(1).terms()));
+    }
+
+    @Test
+    void testNoIndexes() {
+        assertSame(userQuery, sdk.addIndexFilter(userQuery, Map.of()));
+    }
+
+    private static List<String> values(TermsQuery terms) {
+        return terms.terms().value().stream().map(FieldValue::stringValue).toList();
+    }
+}
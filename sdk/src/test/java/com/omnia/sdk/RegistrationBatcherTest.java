@@ -0,0 +1,67 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegistrationBatcherTest {
+
+    @Test
+    void testRegistrationsAreWrittenInOneBatch() {
+        List<Map<String, String>> batches = new CopyOnWriteArrayList<>();
+        RegistrationBatcher batcher = new RegistrationBatcher(batches::add, 100, 200);
+        batcher.start();
+
+        CompletableFuture<Void> first = batcher.register("123", "commune_main");
+        CompletableFuture<Void> second = batcher.register("456", "commune_main");
+        CompletableFuture<Void> duplicate = batcher.register("123", "commune_main");
+        CompletableFuture.allOf(first, second, duplicate).join();
+        batcher.close();
+
+        assertEquals(List.of(Map.of("123", "commune_main", "456", "commune_main")), batches);
+    }
+
+    @Test
+    void testCloseWritesQueuedRegistrations() {
+        List<Map<String, String>> batches = new CopyOnWriteArrayList<>();
+        RegistrationBatcher batcher = new RegistrationBatcher(batches::add, 100, 1000);
+        batcher.start();
+
+        CompletableFuture<Void> written = batcher.register("123", "commune_main");
+        batcher.close();
+
+        assertTrue(written.isDone());
+        assertEquals(1, batches.size());
+        assertThrows(IllegalStateException.class, () -> batcher.register("456", "commune_main"));
+    }
+
+    @Test
+    void testCloseFailsRegistrationsTheWriterDidNotTake() {
+        RegistrationBatcher batcher = new RegistrationBatcher(batch -> fail("Writer never runs"), 100, 0);
+
+        CompletableFuture<Void> written = batcher.register("123", "commune_main");
+        batcher.close();
+
+        CompletionException e = assertThrows(CompletionException.class, written::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void testFailedWriteCompletesExceptionally() {
+        RegistrationBatcher batcher = new RegistrationBatcher(batch -> {
+            throw new IllegalStateException("database is down");
+        }, 100, 0);
+        batcher.start();
+
+        CompletableFuture<Void> written = batcher.register("123", "commune_main");
+        CompletionException e = assertThrows(CompletionException.class, written::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        batcher.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RendezvousHashingTest {
+
+    @Test
+    void testPlacementIsDeterministic() {
+        RendezvousHashing first = new RendezvousHashing(List.of("commune_a", "commune_b", "commune_c"));
+        RendezvousHashing second = new RendezvousHashing(List.of("commune_c", "commune_a", "commune_b"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(first.select("tenant-" + i), second.select("tenant-" + i));
+        }
+    }
+
+    @Test
+    void testPlacementIsBalanced() {
+        List<String> ring = List.of("commune_a", "commune_b", "commune_c", "commune_d");
+        RendezvousHashing hashing = new RendezvousHashing(ring);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(hashing.select("tenant-" + i), 1, Integer::sum);
+        }
+        for (String commune : ring) {
+            int count = counts.getOrDefault(commune, 0);
+            assertTrue(count > 2000 && count < 3000, commune + " got " + count + " indexes");
+        }
+    }
+
+    @Test
+    void testAddingCommuneMovesOnlyItsIndexes() {
+        RendezvousHashing before = new RendezvousHashing(List.of("commune_a", "commune_b", "commune_c"));
+        RendezvousHashing after = new RendezvousHashing(List.of("commune_a", "commune_b", "commune_c", "commune_d"));
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            String indexId = "tenant-" + i;
+            String commune = after.select(indexId);
+            if (!commune.equals(before.select(indexId))) {
+                assertEquals("commune_d", commune);
+                moved++;
+            }
+        }
+        assertTrue(moved > 2000 && moved < 3000, "moved " + moved + " indexes");
+    }
+
+    @Test
+    void testEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new RendezvousHashing(List.of()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingCacheTest {
+
+    @Test
+    void testHitAndMiss() {
+        RoutingCache cache = new RoutingCache(10, Duration.ZERO);
+        assertNull(cache.get("123"));
+        cache.put("123", "commune", cache.stamp("123"));
+        assertEquals("commune", cache.get("123"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void testTtlExpiration() {
+        AtomicLong clock = new AtomicLong();
+        RoutingCache cache = new RoutingCache(10, Duration.ofSeconds(5), clock::get);
+        cache.put("123", "commune", cache.stamp("123"));
+        clock.addAndGet(Duration.ofSeconds(4).toNanos());
+        assertEquals("commune", cache.get("123"));
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get("123"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEvictionKeepsFrequentIndexes() {
+        RoutingCache cache = new RoutingCache(100, Duration.ZERO);
+        for (int i = 0; i < 100; i++) {
+            cache.put("index-" + i, "commune", cache.stamp("index-" + i));
+            if (i % 2 == 0) {
+                cache.get("index-" + i);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.put("new-" + i, "commune", cache.stamp("new-" + i));
+        }
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.evictionCount() > 0);
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals("commune", cache.get("index-" + i));
+        }
+    }
+
+    @Test
+    void testNewEntryOutlivesAgedEntries() {
+        RoutingCache cache = new RoutingCache(10, Duration.ZERO);
+        for (int i = 0; i < 10; i++) {
+            cache.put("index-" + i, "commune", cache.stamp("index-" + i));
+        }
+        for (int round = 0; round < 50; round++) {
+            // Every round evicts a cache worth of entries, the survivors are aged before the next new index
+            cache.put("new-" + round, "commune", cache.stamp("new-" + round));
+            assertEquals("commune", cache.get("new-" + round), "New index should not be the first evicted");
+            for (int i = 0; i < 9; i++) {
+                String indexId = "scan-" + round + "-" + i;
+                cache.put(indexId, "commune", cache.stamp(indexId));
+            }
+            assertEquals(10, cache.size());
+        }
+    }
+
+    @Test
+    void testInvalidate() {
+        RoutingCache cache = new RoutingCache(10, Duration.ZERO);
+        cache.put("123", "commune", cache.stamp("123"));
+        cache.put("456", "commune", cache.stamp("456"));
+        cache.invalidate("123");
+        assertNull(cache.get("123"));
+        assertEquals("commune", cache.get("456"));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testStalePutIsRejected() {
+        RoutingCache cache = new RoutingCache(10, Duration.ZERO);
+
+        // A load read the old commune, the notification of the move arrived before its put
+        long stamp = cache.stamp("123");
+        cache.update("123", "commune_moved");
+        assertFalse(cache.put("123", "commune", stamp));
+        assertNull(cache.get("123"));
+
+        stamp = cache.stamp("456");
+        cache.invalidate("456");
+        assertFalse(cache.put("456", "commune", stamp));
+        stamp = cache.stamp("456");
+        cache.invalidateAll();
+        assertFalse(cache.put("456", "commune", stamp));
+        assertNull(cache.get("456"));
+
+        assertTrue(cache.put("123", "commune_moved", cache.stamp("123")));
+        assertEquals("commune_moved", cache.get("123"));
+    }
+
+    @Test
+    void testFilterIsReused() {
+        RoutingCache cache = new RoutingCache(10, Duration.ZERO);
+        AtomicLong built = new AtomicLong();
+        Function<String, Query> builder = indexId -> {
+            built.incrementAndGet();
+            return Query.of(q -> q.term(t -> t.field("real_index").value(v -> v.stringValue(indexId))));
+        };
+
+        cache.filter("123", builder);
+        cache.filter("123", builder);
+        assertEquals(2, built.get(), "Uncached index should get a new filter every time");
+
+        cache.put("123", "commune", cache.stamp("123"));
+        Query filter = cache.filter("123", builder);
+        assertSame(filter, cache.filter("123", builder));
+        cache.update("123", "commune_moved");
+        assertSame(filter, cache.filter("123", builder));
+        assertEquals(3, built.get());
+    }
+
+    @Test
+    void testDisabledCache() {
+        RoutingCache cache = new RoutingCache(0, Duration.ZERO);
+        cache.put("123", "commune", cache.stamp("123"));
+        assertNull(cache.get("123"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoutingSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndLookup() throws IOException {
+        Map<String, String> mapping = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            mapping.put("index-" + i, "commune_" + (i % 7));
+        }
+        mapping.put("индекс", "commune_main");
+        Path path = directory.resolve("routing.snapshot");
+        RoutingSnapshot.write(path, mapping);
+
+        RoutingSnapshot snapshot = RoutingSnapshot.open(path);
+        assertEquals(mapping.size(), snapshot.size());
+        mapping.forEach((index, commune) -> assertEquals(commune, snapshot.get(index)));
+        assertNull(snapshot.get("index-1000"));
+        assertNull(snapshot.get(""));
+    }
+
+    @Test
+    void testRewriteKeepsOpenSnapshotValid() throws IOException {
+        Path path = directory.resolve("routing.snapshot");
+        RoutingSnapshot.write(path, Map.of("123", "commune"));
+        RoutingSnapshot old = RoutingSnapshot.open(path);
+
+        RoutingSnapshot.write(path, Map.of("123", "commune_moved"));
+        assertEquals("commune", old.get("123"));
+        assertEquals("commune_moved", RoutingSnapshot.open(path).get("123"));
+    }
+
+    @Test
+    void testEmptySnapshot() throws IOException {
+        Path path = directory.resolve("routing.snapshot");
+        RoutingSnapshot.write(path, Map.of());
+        assertNull(RoutingSnapshot.open(path).get("123"));
+    }
+
+    @Test
+    void testRejectsForeignFile() throws IOException {
+        Path path = directory.resolve("routing.snapshot");
+        Files.writeString(path, "definitely not a snapshot");
+        assertThrows(IOException.class, () -> RoutingSnapshot.open(path));
+    }
+
+    @Test
+    void testRejectsTruncatedFile() throws IOException {
+        Path path = directory.resolve("routing.snapshot");
+        Map<String, String> mapping = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            mapping.put("index-" + i, "commune_" + (i % 7));
+        }
+        RoutingSnapshot.write(path, mapping);
+        byte[] bytes = Files.readAllBytes(path);
+
+        // Cut in the entries, in the offset table and right after the header
+        for (int size : new int[]{bytes.length - 3, 200, 30}) {
+            Files.write(path, Arrays.copyOf(bytes, size));
+            assertThrows(IOException.class, () -> RoutingSnapshot.open(path), "Snapshot cut at " + size + " bytes");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.omnia.sdk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    @Test
+    void testConcurrentLoadsAreCoalesced() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("123", key -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    return "commune";
+                })));
+            }
+            while (singleFlight.deduplicatedCount() < threads - 1) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("commune", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(threads - 1, singleFlight.deduplicatedCount());
+    }
+
+    @Test
+    void testFailureIsSharedAndNotCached() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("123", key -> {
+            throw new IllegalStateException("database is down");
+        }));
+        assertEquals("commune", singleFlight.execute("123", key -> "commune"));
+    }
+
+    @Test
+    void testExecuteAllLoadsBatch() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        List<List<String>> batches = new ArrayList<>();
+        Map<String, String> result = singleFlight.executeAll(List.of("b", "a", "b"), keys -> {
+            batches.add(List.copyOf(keys));
+            Map<String, String> loaded = new HashMap<>();
+            keys.forEach(key -> loaded.put(key, "commune_" + key));
+            return loaded;
+        });
+        assertEquals(List.of(List.of("b", "a")), batches);
+        assertEquals(List.of("b", "a"), List.copyOf(result.keySet()));
+        assertEquals("commune_a", result.get("a"));
+    }
+}
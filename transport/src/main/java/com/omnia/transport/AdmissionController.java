@@ -0,0 +1,145 @@
+package com.omnia.transport;
+
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-commune concurrency limits, so that one busy tenant cannot flood the queues of a
+ * commune shared with many others. Every commune has an adaptive limit of requests in
+ * flight (AIMD): it grows by one per limit-worth of fast responses and is multiplied by the
+ * backoff ratio on every 429 or response slower than the latency threshold.
+ * Requests over the limit wait in a bounded queue, requests over the queue are rejected
+ * at once with a 429 {@code rejected_execution_exception}, as the cluster itself would.
+ */
+public class AdmissionController {
+    private final double initialLimit;
+    private final double minLimit;
+    private final double maxLimit;
+    private final int maxQueued;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Map<String, CommuneLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param initialLimit Concurrency limit of a commune before any response is observed
+     * @param minLimit Lowest limit the backoff can reach
+     * @param maxLimit Highest limit the increase can reach
+     * @param maxQueued Maximum number of requests waiting per commune, 0 rejects right away
+     * @param latencyThresholdMillis Responses slower than this count as overload
+     * @param backoffRatio Factor applied to the limit on overload
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit, int maxQueued,
+                               long latencyThresholdMillis, double backoffRatio) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Admission backoff ratio must be between 0 and 1");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = maxQueued;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Takes a slot of the commune
+     * @param commune Commune the request targets
+     * @return Future completed once the request may be sent, or failed with a 429
+     * if the commune is at its limit and its queue is full
+     */
+    public CompletableFuture<Void> acquire(String commune) {
+        return limits.computeIfAbsent(commune, ignored -> new CommuneLimit()).acquire(commune);
+    }
+
+    /**
+     * Returns the slot of a completed request and adjusts the limit of the commune
+     * @param commune Commune the request targeted
+     * @param latencyNanos Time from sending the request to its response
+     * @param overloaded Whether the cluster rejected the request with a 429
+     */
+    public void release(String commune, long latencyNanos, boolean overloaded) {
+        limits.get(commune).release(overloaded || latencyNanos > latencyThresholdNanos);
+    }
+
+    /**
+     * Returns admission state of every commune that received requests
+     * @return Map from commune to its statistics, sorted by commune
+     */
+    public Map<String, CommuneStats> stats() {
+        Map<String, CommuneStats> stats = new TreeMap<>();
+        limits.forEach((commune, limit) -> stats.put(commune, limit.stats()));
+        return stats;
+    }
+
+    /**
+     * Admission state of a commune
+     * @param limit Current concurrency limit
+     * @param inFlight Requests sent and not yet answered
+     * @param queued Requests waiting for a slot
+     * @param rejected Requests rejected since start
+     */
+    public record CommuneStats(int limit, int inFlight, int queued, long rejected) {
+    }
+
+    private final class CommuneLimit {
+        private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private double limit = initialLimit;
+        private int inFlight;
+        private long rejected;
+
+        synchronized CompletableFuture<Void> acquire(String commune) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiting.size() < maxQueued) {
+                CompletableFuture<Void> slot = new CompletableFuture<>();
+                waiting.add(slot);
+                return slot;
+            }
+            rejected++;
+            return CompletableFuture.failedFuture(new OpenSearchException(ErrorResponse.of(r -> r
+                    .status(429)
+                    .error(e -> e.type("rejected_execution_exception")
+                            .reason("commune [" + commune + "] is at its limit of " + (int) limit
+                                    + " concurrent requests and " + maxQueued + " queued")))));
+        }
+
+        void release(boolean overloaded) {
+            CompletableFuture<?>[] admitted;
+            synchronized (this) {
+                inFlight--;
+                if (overloaded) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+                int free = Math.min((int) limit - inFlight, waiting.size());
+                admitted = new CompletableFuture<?>[Math.max(free, 0)];
+                for (int i = 0; i < admitted.length; i++) {
+                    admitted[i] = waiting.poll();
+                    inFlight++;
+                }
+            }
+            // Waiting requests are sent outside the lock
+            for (CompletableFuture<?> slot : admitted) {
+                slot.complete(null);
+            }
+        }
+
+        synchronized CommuneStats stats() {
+            return new CommuneStats((int) limit, inFlight, waiting.size(), rejected);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import jakarta.json.stream.JsonGenerator;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpSerializable;
+import org.opensearch.client.json.NdJsonpSerializable;
+import org.opensearch.client.json.jackson.JacksonJsonpGenerator;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkOperationBase;
+import org.opensearch.client.opensearch.core.bulk.BulkOperationVariant;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes every bulk operation to the commune of its logical index and stores the logical index
+ * in the feature field of indexed, created and updated documents. Operations without routing
+ * get the custom routing of their index, if it has one.
+ * Operations are wrapped, documents are enriched while they are serialized,
+ * so large batches are not copied. Requires {@link org.opensearch.client.json.jackson.JacksonJsonpMapper}.
+ */
+public class BulkRequestRewriter implements RequestRewriter<BulkRequest> {
+    private static final String INDEX_FIELD = "_index";
+    private static final String ROUTING_FIELD = "routing";
+    private static final Set<String> UPDATE_DOCUMENT_FIELDS = Set.of("doc", "upsert");
+
+    /**
+     * Returns distinct indexes named by the operations, the caller resolves them before the rewrite
+     * @param request Bulk request
+     * @return Indexes of the operations, in request order
+     */
+    static Set<String> operationIndexes(BulkRequest request) {
+        Set<String> indexes = new LinkedHashSet<>();
+        for (BulkOperation operation : request.operations()) {
+            String index = indexOf(operation);
+            if (index != null) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    @Override
+    public BulkRequest rewrite(BulkRequest request, OmniaSDK sdk, Map<String, String> communes) {
+        String featureField = sdk.getFilterField();
+        List<BulkOperation> operations = new ArrayList<>(request.operations().size());
+        for (BulkOperation operation : request.operations()) {
+            String index = indexOf(operation);
+            String indexId = index != null ? index : request.index();
+            if (indexId == null) {
+                // No target index at all, OpenSearch rejects the operation
+                operations.add(operation);
+                continue;
+            }
+            String commune = index != null ? RequestRewriters.resolvedCommune(communes, index) : null;
+            // Routing of the request applies to operations without their own routing
+            String routing = request.routing() == null && routingOf(operation) == null ? sdk.getRouting(indexId) : null;
+            operations.add(new BulkOperation(new RoutedOperation(operation, commune, routing, featureField, indexId)));
+        }
+
+        // toBuilder() would append the routed operations to the original ones
+        return BulkRequest.of(b -> {
+            b.index(request.index())
+                    .pipeline(request.pipeline())
+                    .refresh(request.refresh())
+                    .requireAlias(request.requireAlias())
+                    .routing(request.routing())
+                    .source(request.source())
+                    .timeout(request.timeout())
+                    .waitForActiveShards(request.waitForActiveShards())
+                    .operations(operations);
+            if (!request.sourceExcludes().isEmpty()) {
+                b.sourceExcludes(request.sourceExcludes());
+            }
+            if (!request.sourceIncludes().isEmpty()) {
+                b.sourceIncludes(request.sourceIncludes());
+            }
+            return b;
+        });
+    }
+
+    /**
+     * Adds map from logical index to commune of every operation of a rewritten request, in request order
+     * @param rewritten Request returned by {@link #rewrite}
+     * @param communes Map from index of the request URL to its commune, used by operations without an index
+     * @param itemCommunes Receives the communes of the operations
+     */
+    static void collectCommunes(BulkRequest rewritten, Map<String, String> communes, List<Map<String, String>> itemCommunes) {
+        for (BulkOperation operation : rewritten.operations()) {
+            if (operation._get() instanceof RoutedOperation routed && routed.commune != null) {
+                itemCommunes.add(Map.of(routed.indexId, routed.commune));
+            } else {
+                itemCommunes.add(communes);
+            }
+        }
+    }
+
+    private static String indexOf(BulkOperation operation) {
+        return ((BulkOperationBase) operation._get()).index();
+    }
+
+    private static String routingOf(BulkOperation operation) {
+        return ((BulkOperationBase) operation._get()).routing();
+    }
+
+    static JsonGenerator overrideField(JsonGenerator generator, String field, String value, int depth,
+                                       boolean addIfMissing, Set<String> parents) {
+        if (!(generator instanceof JacksonJsonpGenerator jackson)) {
+            throw new IllegalStateException("Bulk routing requires JacksonJsonpMapper");
+        }
+        return new JacksonJsonpGenerator(new FieldOverridingGenerator(
+                jackson.jacksonGenerator(), field, value, depth, addIfMissing, parents));
+    }
+
+    /**
+     * Bulk operation writing its action line with the commune as {@code _index}
+     * and the added routing, and its documents with the feature field
+     */
+    private static final class RoutedOperation implements BulkOperationVariant, NdJsonpSerializable, JsonpSerializable {
+        private final BulkOperation operation;
+        private final String commune;
+        private final String routing;
+        private final String featureField;
+        private final String indexId;
+
+        RoutedOperation(BulkOperation operation, String commune, String routing, String featureField, String indexId) {
+            this.operation = operation;
+            this.commune = commune;
+            this.routing = routing;
+            this.featureField = featureField;
+            this.indexId = indexId;
+        }
+
+        @Override
+        public BulkOperation.Kind _bulkOperationKind() {
+            return operation._kind();
+        }
+
+        @Override
+        public void serialize(JsonGenerator generator, JsonpMapper mapper) {
+            JsonpSerializable action = (JsonpSerializable) operation._get();
+            // The action object is nested in {"<kind>": {...}}
+            JsonGenerator routed = commune == null ? generator : overrideField(generator, INDEX_FIELD, commune, 2, false, null);
+            if (routing != null) {
+                // The operation has no routing of its own, the field is only added
+                routed = overrideField(routed, ROUTING_FIELD, routing, 2, true, null);
+            }
+            action.serialize(routed, mapper);
+        }
+
+        @Override
+        public Iterator<?> _serializables() {
+            if (!(operation._get() instanceof NdJsonpSerializable variant)) {
+                return List.of(this).iterator();
+            }
+            List<Object> lines = new ArrayList<>(2);
+            lines.add(this);
+            Iterator<?> original = variant._serializables();
+            // First line is the action itself
+            original.next();
+            while (original.hasNext()) {
+                lines.add(new EnrichedDocument(original.next(), operation.isUpdate()));
+            }
+            return lines.iterator();
+        }
+
+        private final class EnrichedDocument implements JsonpSerializable {
+            private final Object document;
+            private final boolean update;
+
+            EnrichedDocument(Object document, boolean update) {
+                this.document = document;
+                this.update = update;
+            }
+
+            @Override
+            public void serialize(JsonGenerator generator, JsonpMapper mapper) {
+                // Update lines hold partial document and upsert under "doc" and "upsert"
+                JsonGenerator enriching = update
+                        ? overrideField(generator, featureField, indexId, 2, true, UPDATE_DOCUMENT_FIELDS)
+                        : overrideField(generator, featureField, indexId, 1, true, null);
+                mapper.serialize(document, enriching);
+            }
+        }
+    }
+}
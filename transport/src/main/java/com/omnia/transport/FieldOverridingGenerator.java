@@ -0,0 +1,243 @@
+package com.omnia.transport;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Set;
+
+/**
+ * Generator that forces a string field to a fixed value while the JSON is being written.
+ * The field is overridden in objects at the given nesting depth (optionally only in objects
+ * stored under one of the parent fields) and, if requested, added to objects that lack it.
+ * Nothing is buffered, the document is never copied.
+ */
+class FieldOverridingGenerator extends JsonGeneratorDelegate {
+    private final String field;
+    private final String value;
+    private final int depth;
+    private final boolean addIfMissing;
+    private final Set<String> parents;
+
+    private boolean seen;
+    private boolean replaceNext;
+
+    /**
+     * @param delegate Generator to write to
+     * @param field Overridden field
+     * @param value Value written instead of the original one
+     * @param depth Nesting depth of the objects holding the field, 1 for the root object
+     * @param addIfMissing Whether objects without the field get it
+     * @param parents Fields holding the objects, null to match objects at any parent field
+     */
+    FieldOverridingGenerator(JsonGenerator delegate, String field, String value, int depth,
+                             boolean addIfMissing, Set<String> parents) {
+        super(delegate, false);
+        this.field = field;
+        this.value = value;
+        this.depth = depth;
+        this.addIfMissing = addIfMissing;
+        this.parents = parents;
+    }
+
+    private boolean inTarget() {
+        JsonStreamContext context = delegate.getOutputContext();
+        if (!context.inObject() || context.getNestingDepth() != depth) {
+            return false;
+        }
+        return parents == null || parents.contains(context.getParent().getCurrentName());
+    }
+
+    private boolean replaced() throws IOException {
+        if (!replaceNext) {
+            return false;
+        }
+        replaceNext = false;
+        delegate.writeString(value);
+        return true;
+    }
+
+    private void checkNotReplacing() {
+        if (replaceNext) {
+            throw new IllegalArgumentException("Field '" + field + "' must hold a string value");
+        }
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        delegate.writeFieldName(name);
+        if (name.equals(field) && inTarget()) {
+            seen = true;
+            replaceNext = true;
+        }
+    }
+
+    @Override
+    public void writeFieldName(SerializableString name) throws IOException {
+        writeFieldName(name.getValue());
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        if (inTarget()) {
+            if (!seen && addIfMissing) {
+                delegate.writeStringField(field, value);
+            }
+            seen = false;
+        }
+        delegate.writeEndObject();
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        checkNotReplacing();
+        delegate.writeStartObject();
+    }
+
+    @Override
+    public void writeStartObject(Object forValue) throws IOException {
+        checkNotReplacing();
+        delegate.writeStartObject(forValue);
+    }
+
+    @Override
+    public void writeStartObject(Object forValue, int size) throws IOException {
+        checkNotReplacing();
+        delegate.writeStartObject(forValue, size);
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        checkNotReplacing();
+        delegate.writeStartArray();
+    }
+
+    @Override
+    public void writeStartArray(Object forValue) throws IOException {
+        checkNotReplacing();
+        delegate.writeStartArray(forValue);
+    }
+
+    @Override
+    public void writeStartArray(Object forValue, int size) throws IOException {
+        checkNotReplacing();
+        delegate.writeStartArray(forValue, size);
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (!replaced()) {
+            delegate.writeString(text);
+        }
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int len) throws IOException {
+        if (!replaced()) {
+            delegate.writeString(text, offset, len);
+        }
+    }
+
+    @Override
+    public void writeString(SerializableString text) throws IOException {
+        if (!replaced()) {
+            delegate.writeString(text);
+        }
+    }
+
+    @Override
+    public void writeString(Reader reader, int len) throws IOException {
+        if (!replaced()) {
+            delegate.writeString(reader, len);
+        }
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (!replaced()) {
+            delegate.writeRawUTF8String(text, offset, length);
+        }
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (!replaced()) {
+            delegate.writeUTF8String(text, offset, length);
+        }
+    }
+
+    @Override
+    public void writeNumber(short v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(int v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(long v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigInteger v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(double v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(float v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(BigDecimal v) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(v);
+        }
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        if (!replaced()) {
+            delegate.writeNumber(encodedValue);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean state) throws IOException {
+        if (!replaced()) {
+            delegate.writeBoolean(state);
+        }
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        if (!replaced()) {
+            delegate.writeNull();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import com.omnia.sdk.PendingDeletion;
+import org.opensearch.client.opensearch._types.Conflicts;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.DeleteByQueryRequest;
+import org.opensearch.client.opensearch.tasks.GetTasksRequest;
+import org.opensearch.client.opensearch.tasks.GetTasksResponse;
+import org.opensearch.client.transport.Transport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes logical indexes without touching cluster state: the index is tombstoned in the
+ * mapping store, so it disappears for readers at once, and its documents are removed from
+ * the commune by a throttled delete-by-query task running in the background.
+ * Started tasks are polled and restarted if they fail, the tombstone is cleared once
+ * the task succeeds. Unfinished deletions are leased in the mapping store and the lease is
+ * renewed on every poll: deletions of an instance that stopped, including tasks it started,
+ * are taken over once its lease expires.
+ */
+class IndexDeleter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(IndexDeleter.class);
+
+    private final Transport delegate;
+    private final OmniaSDK sdk;
+    private final long requestsPerSecond;
+    private final long slices;
+    private final String owner = UUID.randomUUID().toString();
+    private final Duration lease;
+    // False if the SDK does not store deletions, only deletions started here are tracked then
+    private final boolean leased;
+    private final ScheduledExecutorService scheduler;
+    // Deleted index to the task removing its documents, null until the task is started
+    private final Map<String, Deletion> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate Transport to the cluster, requests target communes
+     * @param sdk SDK holding index tombstones
+     * @param requestsPerSecond Documents deleted per second by one task
+     * @param slices Number of slices of one task
+     * @param pollSeconds How often started tasks are checked
+     */
+    IndexDeleter(Transport delegate, OmniaSDK sdk, long requestsPerSecond, long slices, long pollSeconds) {
+        this.delegate = delegate;
+        this.sdk = sdk;
+        this.requestsPerSecond = requestsPerSecond;
+        this.slices = slices;
+        this.leased = sdk.storesDeletions();
+        // A lease survives two missed polls
+        this.lease = Duration.ofSeconds(pollSeconds * 3);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "omnia-index-deleter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The first poll resumes deletions left unfinished by stopped instances
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Tombstones the indexes and starts removal of their documents
+     * @param indexIds Logical indexes to delete
+     * @return Future completed with map from deleted index to its commune once the indexes are hidden,
+     * indexes that do not exist are missing from the map
+     */
+    CompletableFuture<Map<String, String>> deleteIndexes(Collection<String> indexIds) {
+        return sdk.tombstoneIndexesAsync(indexIds)
+                .thenApplyAsync(deleted -> {
+                    // Another instance may have claimed a new tombstone first, it removes the documents then
+                    Set<String> claimed = tryClaim();
+                    deleted.forEach((indexId, commune) -> {
+                        if (claimed == null || claimed.contains(indexId)) {
+                            start(indexId, commune);
+                        }
+                    });
+                    return deleted;
+                }, scheduler)
+                .toCompletableFuture();
+    }
+
+    /**
+     * Returns indexes whose documents are still being removed
+     * @return Deleted logical indexes tracked by this instance
+     */
+    Set<String> pendingDeletions() {
+        return Set.copyOf(pending.keySet());
+    }
+
+    private void start(String indexId, String commune) {
+        Deletion deletion = new Deletion(commune);
+        pending.put(indexId, deletion);
+        // Routing is not set: documents written before tenant routing was enabled live on other shards
+        DeleteByQueryRequest request = DeleteByQueryRequest.of(d -> d
+                .index(commune)
+                .query(sdk.getIndexFilter(indexId))
+                .conflicts(Conflicts.Proceed)
+                .waitForCompletion(false)
+                .requestsPerSecond(requestsPerSecond)
+                .slices(slices));
+        delegate.performRequestAsync(request, DeleteByQueryRequest._ENDPOINT, null)
+                .whenComplete((response, e) -> {
+                    if (e != null || response.task() == null) {
+                        // Retried on the next poll
+                        logger.warn("Failed to start deletion of index {} in commune {}", indexId, commune, e);
+                        deletion.failed = true;
+                        return;
+                    }
+                    deletion.taskId = response.task();
+                    // The store is written off the client I/O thread that completed the request
+                    scheduler.execute(() -> record(indexId, response.task()));
+                });
+    }
+
+    private void record(String indexId, String taskId) {
+        try {
+            sdk.recordDeletionTask(indexId, taskId);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to record deletion task {} of index {}", taskId, indexId, e);
+        }
+    }
+
+    /**
+     * Renews leases of tracked deletions and takes over deletions whose lease expired.
+     * Deletions whose lease went to another instance are no longer tracked
+     * @return Deleted indexes leased to this instance, or null if the SDK does not store deletions
+     */
+    private synchronized Set<String> claim() {
+        if (!leased) {
+            return null;
+        }
+        List<PendingDeletion> claimed = sdk.claimDeletions(owner, lease);
+        Set<String> held = new HashSet<>();
+        for (PendingDeletion claim : claimed) {
+            held.add(claim.indexId());
+            pending.computeIfAbsent(claim.indexId(), indexId -> {
+                logger.info("Resuming deletion of index {} in commune {}", indexId, claim.commune());
+                Deletion resumed = new Deletion(claim.commune());
+                resumed.taskId = claim.taskId();
+                // Without a recorded task the documents are removed from the start on the next check
+                resumed.failed = claim.taskId() == null;
+                return resumed;
+            });
+        }
+        pending.keySet().retainAll(held);
+        return held;
+    }
+
+    /**
+     * Claims deletions, failures are logged and treated as if the SDK did not store deletions
+     */
+    private Set<String> tryClaim() {
+        try {
+            return claim();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to renew deletion leases", e);
+            return null;
+        }
+    }
+
+    synchronized void poll() {
+        tryClaim();
+        for (Map.Entry<String, Deletion> entry : pending.entrySet()) {
+            try {
+                check(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to check deletion of index {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private void check(String indexId, Deletion deletion) {
+        if (deletion.failed) {
+            start(indexId, deletion.commune);
+            return;
+        }
+        String taskId = deletion.taskId;
+        if (taskId == null) {
+            // Task is being started
+            return;
+        }
+        GetTasksResponse task;
+        try {
+            task = delegate.performRequestAsync(GetTasksRequest.of(g -> g.taskId(taskId)), GetTasksRequest._ENDPOINT, null).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof OpenSearchException openSearchException
+                    && "resource_not_found_exception".equals(openSearchException.error().type())) {
+                // Task and its result are gone, documents may remain
+                logger.warn("Deletion task {} of index {} is lost, restarting", taskId, indexId);
+                start(indexId, deletion.commune);
+                return;
+            }
+            throw e;
+        }
+        if (!task.completed()) {
+            return;
+        }
+        if (task.error() != null || (task.response() != null && !task.response().failures().isEmpty())) {
+            logger.warn("Deletion task {} of index {} failed, restarting: {}", taskId, indexId,
+                    task.error() != null ? task.error().reason() : task.response().failures());
+            start(indexId, deletion.commune);
+            return;
+        }
+        sdk.completeIndexDeletion(indexId);
+        pending.remove(indexId, deletion);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static final class Deletion {
+        private final String commune;
+        private volatile String taskId;
+        private volatile boolean failed;
+
+        private Deletion(String commune) {
+            this.commune = commune;
+        }
+    }
+}
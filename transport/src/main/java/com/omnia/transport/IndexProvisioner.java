@@ -0,0 +1,141 @@
+package com.omnia.transport;
+
+import com.omnia.common.config.Config;
+import com.omnia.sdk.CommuneTemplate;
+import com.omnia.sdk.OmniaSDK;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.mapping.Property;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.opensearch.indices.CreateIndexRequest;
+import org.opensearch.client.opensearch.indices.GetMappingRequest;
+import org.opensearch.client.opensearch.indices.GetMappingResponse;
+import org.opensearch.client.opensearch.indices.PutMappingRequest;
+import org.opensearch.client.opensearch.indices.get_mapping.IndexMappingRecord;
+import org.opensearch.client.transport.Transport;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates logical indexes as a metadata-only operation: indexes are registered in the
+ * mapping store, and OpenSearch is called only when a commune does not exist yet or
+ * the requested mappings add fields the commune does not have.
+ * Index settings are not applied, communes are shared by many logical indexes.
+ */
+class IndexProvisioner {
+    private final Transport delegate;
+    private final OmniaSDK sdk;
+    private final Config config;
+    // Field paths mapped in each commune, loaded on first use
+    private final Map<String, Set<String>> communeFields = new ConcurrentHashMap<>();
+
+    IndexProvisioner(Transport delegate, OmniaSDK sdk, Config config) {
+        this.delegate = delegate;
+        this.sdk = sdk;
+        this.config = config;
+    }
+
+    /**
+     * Registers the indexes and merges the mappings into their communes
+     * @param indexIds Logical indexes to create
+     * @param mappings Requested mappings, may be null
+     * @return Future completed with map from index to its commune
+     */
+    CompletableFuture<Map<String, String>> createIndexes(Collection<String> indexIds, TypeMapping mappings) {
+        return sdk.registerIndexesAsync(indexIds)
+                .thenCompose(communes -> {
+                    CompletableFuture<?>[] merged = new LinkedHashSet<>(communes.values()).stream()
+                            .map(commune -> mergeMappings(commune, mappings))
+                            .toArray(CompletableFuture[]::new);
+                    return CompletableFuture.allOf(merged).thenApply(ignored -> communes);
+                })
+                .toCompletableFuture();
+    }
+
+    private CompletableFuture<Void> mergeMappings(String commune, TypeMapping mappings) {
+        Set<String> requested = mappings != null ? fieldPaths(mappings.properties()) : Set.of();
+        Set<String> known = communeFields.get(commune);
+        if (known != null && known.containsAll(requested)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return loadFields(commune, mappings).thenCompose(fields -> {
+            if (fields.containsAll(requested)) {
+                communeFields.put(commune, fields);
+                return CompletableFuture.completedFuture(null);
+            }
+            // Put mapping merges properties, fields that are already mapped stay as they are
+            PutMappingRequest put = PutMappingRequest.of(p -> p.index(commune).properties(mappings.properties()));
+            return delegate.performRequestAsync(put, PutMappingRequest._ENDPOINT, null).thenRun(() -> {
+                Set<String> merged = new HashSet<>(fields);
+                merged.addAll(requested);
+                communeFields.put(commune, merged);
+            });
+        });
+    }
+
+    /**
+     * Loads fields of the commune. A missing commune is created from the commune template,
+     * the same the migrator uses, with the requested properties merged into it
+     */
+    private CompletableFuture<Set<String>> loadFields(String commune, TypeMapping mappings) {
+        GetMappingRequest get = GetMappingRequest.of(g -> g.index(commune));
+        return delegate.performRequestAsync(get, GetMappingRequest._ENDPOINT, null)
+                .thenApply(response -> fieldsOf(response, commune))
+                .exceptionallyCompose(e -> {
+                    if (!isError(e, "index_not_found_exception")) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    CreateIndexRequest create = CommuneTemplate.of(commune, config, mappings);
+                    return delegate.performRequestAsync(create, CreateIndexRequest._ENDPOINT, null)
+                            .thenApply(created -> fieldPaths(create.mappings().properties()))
+                            .exceptionallyCompose(createFailure -> isError(createFailure, "resource_already_exists_exception")
+                                    // Created concurrently by another client
+                                    ? delegate.performRequestAsync(get, GetMappingRequest._ENDPOINT, null)
+                                            .thenApply(response -> fieldsOf(response, commune))
+                                    : CompletableFuture.failedFuture(createFailure));
+                });
+    }
+
+    private static Set<String> fieldsOf(GetMappingResponse response, String commune) {
+        IndexMappingRecord record = response.get(commune);
+        if (record == null || record.mappings() == null) {
+            return Set.of();
+        }
+        return fieldPaths(record.mappings().properties());
+    }
+
+    private static boolean isError(Throwable e, String type) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        return cause instanceof OpenSearchException openSearchException
+                && Objects.equals(openSearchException.error().type(), type);
+    }
+
+    /**
+     * Flattens properties into dotted paths of every field, including fields of objects
+     */
+    static Set<String> fieldPaths(Map<String, Property> properties) {
+        Set<String> paths = new HashSet<>();
+        addPaths("", properties, paths);
+        return paths;
+    }
+
+    private static void addPaths(String prefix, Map<String, Property> properties, Set<String> paths) {
+        for (Map.Entry<String, Property> entry : properties.entrySet()) {
+            String path = prefix + entry.getKey();
+            paths.add(path);
+            Property property = entry.getValue();
+            if (property.isObject()) {
+                addPaths(path + ".", property.object().properties(), paths);
+            } else if (property.isNested()) {
+                addPaths(path + ".", property.nested().properties(), paths);
+            }
+        }
+    }
+}
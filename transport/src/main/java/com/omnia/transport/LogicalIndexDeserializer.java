@@ -0,0 +1,406 @@
+package com.omnia.transport;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import jakarta.json.stream.JsonParser;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpParser;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deserializes responses with {@code _index} values renamed from communes back to logical indexes.
+ * Values are replaced by the Jackson parser as tokens are read, so responses are not copied.
+ * Documents in {@code _source} are left as they are. Parsers other than Jackson's are not wrapped.
+ * <p>
+ * Items of bulk and multi-search responses are renamed with the communes of their own operation
+ * or search. Hits of a commune shared by several indexes of the request are read ahead up to the
+ * feature field of their source or fields and renamed from it, hits without it keep the commune.
+ * @param <T> Response type
+ */
+class LogicalIndexDeserializer<T> implements JsonpDeserializer<T> {
+    private static final String INDEX_FIELD = "_index";
+    private static final String SOURCE_FIELD = "_source";
+    private static final String FIELDS_FIELD = "fields";
+    private static final String HITS_FIELD = "hits";
+    // Top-level arrays of bulk and multi-search responses, one element per operation or search
+    private static final Set<String> ITEM_FIELDS = Set.of("items", "responses");
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonpDeserializer<T> deserializer;
+    private final Renaming renaming;
+    private final List<Renaming> items;
+    private final String featureField;
+
+    private LogicalIndexDeserializer(JsonpDeserializer<T> deserializer, Renaming renaming, List<Renaming> items, String featureField) {
+        this.deserializer = deserializer;
+        this.renaming = renaming;
+        this.items = items;
+        this.featureField = featureField;
+    }
+
+    /**
+     * Wraps the deserializer of a response to a request of the given indexes,
+     * hits of shared communes keep the commune
+     * @param deserializer Deserializer of the response
+     * @param communes Map from logical index to its commune
+     * @return Renaming deserializer, or the deserializer itself if no commune maps back to a single index
+     */
+    static <T> JsonpDeserializer<T> of(JsonpDeserializer<T> deserializer, Map<String, String> communes) {
+        return of(deserializer, communes, List.of(), null);
+    }
+
+    /**
+     * Wraps the deserializer of a response to a request of the given indexes
+     * @param deserializer Deserializer of the response
+     * @param communes Map from logical index of the request URL to its commune
+     * @param itemCommunes Map from logical index to commune of every bulk operation or search, in request order
+     * @param featureField Source field holding the logical index of a document, null to leave shared communes
+     * @return Renaming deserializer, or the deserializer itself if nothing can be renamed
+     */
+    static <T> JsonpDeserializer<T> of(JsonpDeserializer<T> deserializer, Map<String, String> communes,
+                                       List<Map<String, String>> itemCommunes, String featureField) {
+        Renaming renaming = Renaming.of(communes);
+        List<Renaming> items = new ArrayList<>(itemCommunes.size());
+        boolean empty = renaming.isEmpty(featureField);
+        for (Map<String, String> item : itemCommunes) {
+            Renaming itemRenaming = Renaming.of(item);
+            items.add(itemRenaming);
+            empty &= itemRenaming.isEmpty(featureField);
+        }
+        return empty ? deserializer : new LogicalIndexDeserializer<>(deserializer, renaming, items, featureField);
+    }
+
+    @Override
+    public EnumSet<JsonParser.Event> nativeEvents() {
+        return deserializer.nativeEvents();
+    }
+
+    @Override
+    public EnumSet<JsonParser.Event> acceptedEvents() {
+        return deserializer.acceptedEvents();
+    }
+
+    @Override
+    public T deserialize(JsonParser parser, JsonpMapper mapper) {
+        return deserializer.deserialize(wrap(parser), mapper);
+    }
+
+    @Override
+    public T deserialize(JsonParser parser, JsonpMapper mapper, JsonParser.Event event) {
+        return deserializer.deserialize(wrap(parser), mapper, event);
+    }
+
+    private JsonParser wrap(JsonParser parser) {
+        if (parser instanceof JacksonJsonpParser jackson) {
+            // Jackson-backed document deserializers require a JacksonJsonpParser, so the rename happens one level below
+            return new JacksonJsonpParser(new RenamingParser(jackson.jacksonParser(), renaming, items, featureField));
+        }
+        return parser;
+    }
+
+    private static final class RenamingParser extends JsonParserDelegate {
+        private final Renaming renaming;
+        private final List<Renaming> items;
+        private final String featureField;
+        private final Deque<Replay> replays = new ArrayDeque<>();
+
+        RenamingParser(com.fasterxml.jackson.core.JsonParser parser, Renaming renaming, List<Renaming> items, String featureField) {
+            super(parser);
+            this.renaming = renaming;
+            this.items = items;
+            this.featureField = featureField;
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            JsonToken token = delegate.nextToken();
+            while (!replays.isEmpty() && delegate == replays.peek().parser() && replays.peek().isOver(token)) {
+                // The part of the hit read ahead is over, continue with the parser it was read from
+                Replay replay = replays.pop();
+                replay.parser().close();
+                delegate = replay.source();
+                token = delegate.nextToken();
+            }
+            if (token == JsonToken.START_OBJECT && featureField != null && isHit()) {
+                return readHit();
+            }
+            return token;
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            // The delegate would skip the read ahead of hits
+            JsonToken token = nextToken();
+            return token == JsonToken.FIELD_NAME ? nextToken() : token;
+        }
+
+        @Override
+        public com.fasterxml.jackson.core.JsonParser skipChildren() throws IOException {
+            if (replays.isEmpty()) {
+                delegate.skipChildren();
+                return this;
+            }
+            // The delegate would skip past the end of the part of a hit read ahead
+            JsonToken token = currentToken();
+            if (token != null && token.isStructStart()) {
+                for (int depth = 1; depth > 0 && (token = nextToken()) != null; ) {
+                    if (token.isStructStart()) {
+                        depth++;
+                    } else if (token.isStructEnd()) {
+                        depth--;
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Returns logical index if the current token is an {@code _index} value of a known commune
+         */
+        private String renamed() throws IOException {
+            if (delegate.currentToken() != JsonToken.VALUE_STRING || !INDEX_FIELD.equals(delegate.currentName())) {
+                return null;
+            }
+            JsonStreamContext object = delegate.getParsingContext();
+            if (inSource(object.getParent())) {
+                return null;
+            }
+            Replay replay = replays.peek();
+            if (replay != null && replay.indexId() != null && delegate == replay.parser() && object.getParent().inRoot()) {
+                return replay.indexId();
+            }
+            return scope(object).rename(delegate.getText());
+        }
+
+        private static boolean inSource(JsonStreamContext context) {
+            for (; context != null; context = context.getParent()) {
+                if (SOURCE_FIELD.equals(context.getCurrentName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns communes of the bulk operation or search the context belongs to
+         */
+        private Renaming scope(JsonStreamContext context) {
+            Replay replay = replays.peek();
+            if (replay != null) {
+                return replay.scope();
+            }
+            if (!items.isEmpty()) {
+                for (; context.getParent() != null; context = context.getParent()) {
+                    JsonStreamContext field = context.getParent();
+                    if (context.inArray() && field.getParent() != null && field.getParent().inRoot()
+                            && ITEM_FIELDS.contains(field.getCurrentName())) {
+                        int position = context.getCurrentIndex();
+                        return position < items.size() ? items.get(position) : renaming;
+                    }
+                }
+            }
+            return renaming;
+        }
+
+        /**
+         * Checks whether the object just started is an element of {@code hits.hits}, inner hits included
+         */
+        private boolean isHit() {
+            JsonStreamContext array = delegate.getParsingContext().getParent();
+            if (array == null || !array.inArray()) {
+                return false;
+            }
+            JsonStreamContext hits = array.getParent();
+            return HITS_FIELD.equals(hits.getCurrentName()) && hits.getParent() != null
+                    && HITS_FIELD.equals(hits.getParent().getCurrentName()) && !inSource(hits.getParent().getParent());
+        }
+
+        /**
+         * Reads the hit ahead until its commune and logical index are known and replays the part read,
+         * so that the {@code _index} of a shared commune is renamed to the logical index of the hit.
+         * The rest of the hit is read from the response as usual
+         * @return First token of the replayed hit
+         */
+        private JsonToken readHit() throws IOException {
+            Renaming scope = scope(delegate.getParsingContext());
+            if (!scope.hasShared()) {
+                return JsonToken.START_OBJECT;
+            }
+            StringWriter hit = new StringWriter();
+            String commune = null;
+            String indexId = null;
+            int end;
+            try (JsonGenerator generator = FACTORY.createGenerator(hit)) {
+                int depth = 0;
+                JsonToken token = delegate.currentToken();
+                do {
+                    if (token.isStructStart()) {
+                        depth++;
+                    } else if (token.isStructEnd()) {
+                        depth--;
+                    } else if (token == JsonToken.VALUE_STRING) {
+                        if (depth == 1 && INDEX_FIELD.equals(delegate.currentName())) {
+                            commune = delegate.getText();
+                        } else if (indexId == null && isFeatureValue(depth)) {
+                            indexId = delegate.getText();
+                        }
+                    }
+                    generator.copyCurrentEventExact(delegate);
+                } while (depth > 0 && (commune == null || scope.isShared(commune) && indexId == null)
+                        && (token = delegate.nextToken()) != null);
+                generator.flush();
+                // Objects left open are closed by the generator, the replay stops before them
+                end = hit.getBuffer().length();
+            }
+            com.fasterxml.jackson.core.JsonParser parser = FACTORY.createParser(hit.toString());
+            parser.setCodec(delegate.getCodec());
+            replays.push(new Replay(parser, delegate, end, scope.resolve(commune, indexId), scope));
+            delegate = parser;
+            return parser.nextToken();
+        }
+
+        /**
+         * Checks whether the current value is the feature field of the hit, either in {@code _source}
+         * or as the first value of it in {@code fields}
+         * @param depth Depth of the current value in the hit
+         */
+        private boolean isFeatureValue(int depth) {
+            JsonStreamContext context = delegate.getParsingContext();
+            if (depth == 3 && context.inArray() && context.getCurrentIndex() == 0) {
+                JsonStreamContext fields = context.getParent();
+                return featureField.equals(fields.getCurrentName())
+                        && FIELDS_FIELD.equals(fields.getParent().getCurrentName());
+            }
+            return depth == 2 && featureField.equals(context.getCurrentName())
+                    && SOURCE_FIELD.equals(context.getParent().getCurrentName());
+        }
+
+        @Override
+        public String getText() throws IOException {
+            String renamed = renamed();
+            return renamed != null ? renamed : delegate.getText();
+        }
+
+        @Override
+        public int getText(Writer writer) throws IOException {
+            String renamed = renamed();
+            if (renamed == null) {
+                return delegate.getText(writer);
+            }
+            writer.write(renamed);
+            return renamed.length();
+        }
+
+        @Override
+        public String getValueAsString() throws IOException {
+            String renamed = renamed();
+            return renamed != null ? renamed : delegate.getValueAsString();
+        }
+
+        @Override
+        public String getValueAsString(String defaultValue) throws IOException {
+            String renamed = renamed();
+            return renamed != null ? renamed : delegate.getValueAsString(defaultValue);
+        }
+
+        @Override
+        public boolean hasTextCharacters() {
+            try {
+                return renamed() == null && delegate.hasTextCharacters();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public char[] getTextCharacters() throws IOException {
+            String renamed = renamed();
+            return renamed != null ? renamed.toCharArray() : delegate.getTextCharacters();
+        }
+
+        @Override
+        public int getTextLength() throws IOException {
+            String renamed = renamed();
+            return renamed != null ? renamed.length() : delegate.getTextLength();
+        }
+
+        @Override
+        public int getTextOffset() throws IOException {
+            return renamed() != null ? 0 : delegate.getTextOffset();
+        }
+    }
+
+    /**
+     * Communes of a request, or of one of its bulk operations or searches. A commune of a single
+     * logical index is renamed to it, a shared commune only to one of its indexes found in a hit
+     */
+    private record Renaming(Map<String, String> logicalIndexes, Map<String, Set<String>> shared) {
+        static Renaming of(Map<String, String> communes) {
+            Map<String, String> logicalIndexes = new HashMap<>();
+            Map<String, Set<String>> shared = new HashMap<>();
+            for (Map.Entry<String, String> entry : communes.entrySet()) {
+                String commune = entry.getValue();
+                if (commune == null) {
+                    continue;
+                }
+                String previous = logicalIndexes.putIfAbsent(commune, entry.getKey());
+                if (previous != null && !previous.equals(entry.getKey())) {
+                    shared.computeIfAbsent(commune, ignored -> new HashSet<>(Set.of(previous))).add(entry.getKey());
+                }
+            }
+            logicalIndexes.keySet().removeAll(shared.keySet());
+            return new Renaming(logicalIndexes, shared);
+        }
+
+        boolean isEmpty(String featureField) {
+            return logicalIndexes.isEmpty() && (featureField == null || shared.isEmpty());
+        }
+
+        boolean hasShared() {
+            return !shared.isEmpty();
+        }
+
+        boolean isShared(String commune) {
+            return shared.containsKey(commune);
+        }
+
+        String rename(String commune) {
+            return logicalIndexes.get(commune);
+        }
+
+        /**
+         * Returns the logical index of a hit of a shared commune, if the commune holds it in this request
+         */
+        String resolve(String commune, String indexId) {
+            Set<String> indexes = commune != null ? shared.get(commune) : null;
+            return indexes != null && indexes.contains(indexId) ? indexId : null;
+        }
+    }
+
+    /**
+     * Part of a hit read ahead and replayed in place of the parser it was read from
+     * @param end Length of the part read, tokens after it only close the objects left open
+     */
+    private record Replay(com.fasterxml.jackson.core.JsonParser parser, com.fasterxml.jackson.core.JsonParser source,
+                          int end, String indexId, Renaming scope) {
+        boolean isOver(JsonToken token) {
+            return token == null || parser.currentTokenLocation().getCharOffset() >= end;
+        }
+    }
+}
@@ -2,18 +2,51 @@ package com.omnia.transport;
 
 
 import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
 import org.opensearch.client.transport.Endpoint;
 
 import com.omnia.sdk.OmniaSDK;
 import org.opensearch.client.transport.JsonEndpoint;
+import org.opensearch.client.transport.endpoints.SimpleEndpoint;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OmniaEndpoint<RequestT, ResponseT, ErrorT> implements Endpoint<RequestT, ResponseT, ErrorT>, JsonEndpoint<RequestT, ResponseT, ErrorT> {
+    private static final char INDEX_SEPARATOR = ',';
+    private static final String ENCODED_SEPARATOR = "%2C";
+    // Communes are few and long-lived, their encoded names are reused by every request
+    private static final Map<String, String> ENCODED_COMMUNES = new ConcurrentHashMap<>();
+    // Paths reading or changing documents of every index, on a commune they would not be filtered by logical index
+    private static final List<String> UNSCOPED_PATHS = List.of("/_all", "/_search", "/_count", "/_mget", "/_mtermvectors",
+            "/_delete_by_query", "/_update_by_query", "/_reindex", "/_field_caps", "/_validate", "/_search_shards",
+            "/_rank_eval", "/_msearch/template", "/_plugins/_sql", "/_plugins/_ppl", "/_opendistro/_sql");
+    // Continue or close searches that were already restricted to logical indexes
+    private static final List<String> SCOPED_PATHS = List.of("/_search/scroll", "/_search/point_in_time");
+
     private final Endpoint<RequestT, ResponseT, ErrorT> endpoint;
     private final OmniaSDK sdk;
+    private Map<String, String> communes;
+    // Communes of the URL indexes and of every index named in the request body, e.g. by bulk operations
+    private Map<String, String> bodyCommunes = Map.of();
+    // Expanded indexes of every msearch item, empty for items searching the URL indexes
+    private List<List<String>> searchIndexes = List.of();
+    // Communes of every bulk operation or search of the rewritten request
+    private List<Map<String, String>> itemCommunes = List.of();
+    // Original and rewritten paths, the delegate endpoint builds its path once per request
+    private String path;
+    private String url;
 
     public OmniaEndpoint(Endpoint<RequestT, ResponseT, ErrorT> endpoint, OmniaSDK sdk) {
         this.endpoint = endpoint;
@@ -27,18 +60,73 @@ public class OmniaEndpoint<RequestT, ResponseT, ErrorT> implements Endpoint<Requ
 
     @Override
     public String requestUrl(RequestT request) throws IllegalArgumentException {
-        List<String> splitedPath = List.of(endpoint.requestUrl(request).split("/"));
-        List<String> Indecies = parseUrl(endpoint.requestUrl(request));
-        StringBuilder answer = new StringBuilder("/" + String.join("%2C", Indecies));
-        if (splitedPath.size() <= 2) {
-            return answer.toString();
+        if (url == null) {
+            Map<String, String> resolved = resolveIndexes(request);
+            url = resolved.isEmpty() ? path(request) : rewriteUrl(path(request), resolved);
+        }
+        return url;
+    }
+
+    /**
+     * Replaces the index segment of the path with communes in a single pass
+     * @param path Path of the original request, its first segment lists logical indexes
+     * @param communes Map from logical index to its commune
+     * @return Path targeting the communes
+     */
+    private static String rewriteUrl(String path, Map<String, String> communes) {
+        int end = indexSegmentEnd(path);
+        if (communes.size() == 1) {
+            String commune = encoded(communes.entrySet().iterator().next());
+            return new StringBuilder(1 + commune.length() + path.length() - end)
+                    .append('/').append(commune).append(path, end, path.length()).toString();
+        }
+        // Expanded patterns put many indexes into the same commune, each commune is listed once
+        Set<String> targets = new LinkedHashSet<>();
+        int length = 1 + path.length() - end;
+        for (Map.Entry<String, String> entry : communes.entrySet()) {
+            String target = encoded(entry);
+            if (targets.add(target)) {
+                length += target.length() + 1;
+            }
+        }
+        StringBuilder url = new StringBuilder(length).append('/');
+        for (String target : targets) {
+            if (url.length() > 1) {
+                url.append(INDEX_SEPARATOR);
+            }
+            url.append(target);
+        }
+        return url.append(path, end, path.length()).toString();
+    }
+
+    /**
+     * Returns path-encoded commune of the index, or the index itself if it has no commune
+     */
+    private static String encoded(Map.Entry<String, String> entry) {
+        String commune = entry.getValue();
+        if (commune == null) {
+            // Taken from the original path, already encoded
+            return entry.getKey();
         }
-        answer.append("/");
-        for (int i = 2; i < splitedPath.size() - 1; i++) {
-            answer.append(splitedPath.get(i)).append("/");
+        return ENCODED_COMMUNES.computeIfAbsent(commune, OmniaEndpoint::encode);
+    }
+
+    private static String encode(String commune) {
+        StringBuilder encoded = new StringBuilder(commune.length());
+        SimpleEndpoint.pathEncode(commune, encoded);
+        return encoded.toString();
+    }
+
+    private static int indexSegmentEnd(String path) {
+        int end = path.indexOf('/', 1);
+        return end < 0 ? path.length() : end;
+    }
+
+    private String path(RequestT request) {
+        if (path == null) {
+            path = endpoint.requestUrl(request);
         }
-        answer.append(splitedPath.getLast());
-        return answer.toString();
+        return path;
     }
 
     @Override
@@ -70,31 +158,204 @@ public class OmniaEndpoint<RequestT, ResponseT, ErrorT> implements Endpoint<Requ
         return endpoint.errorDeserializer(statusCode);
     }
 
+    /**
+     * Returns logical indexes of the path
+     * @param path Path of the original request
+     * @return Indexes of the first path segment, empty for paths like /_cluster/health that do not target an index
+     * @throws OpenSearchException if the path reads or changes documents without naming their indexes
+     */
     public List<String> getIndex(String path) {
-        List<String> parsePath = List.of(path.split("/"));
-        if (parsePath.getFirst() == null) {
-            throw new IllegalArgumentException();
+        if (path.length() < 2 || path.charAt(1) == '/') {
+            return List.of();
+        }
+        if (path.charAt(1) == '_') {
+            if (startsWithPath(path, UNSCOPED_PATHS) && !startsWithPath(path, SCOPED_PATHS)) {
+                throw OmniaTransport.illegalArgument("request [" + path + "] must name its logical indexes");
+            }
+            return List.of();
+        }
+        int end = indexSegmentEnd(path);
+        int separator = nextSeparator(path, 1, end);
+        if (separator == end) {
+            return List.of(path.substring(1, end));
+        }
+        List<String> indexes = new ArrayList<>();
+        int start = 1;
+        while (true) {
+            indexes.add(path.substring(start, separator));
+            if (separator == end) {
+                return indexes;
+            }
+            start = separator + separatorLength(path, separator, end);
+            separator = nextSeparator(path, start, end);
         }
-        return List.of(parsePath.get(1).split("%2C"));
     }
 
-    private List<String> parseUrl(String path) {
-        List<String> answer = new ArrayList<>();
-        for (var x : getIndex(path)) {
-            String newIndex = sdk.transformIndexId(x);
-            if (newIndex == null) {
-                answer.add(x);
-                continue;
+    private static boolean startsWithPath(String path, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                return true;
             }
-            answer.add(newIndex);
         }
-        return answer;
+        return false;
+    }
+
+    /**
+     * Finds the next index separator, either a comma or its encoded form
+     * @return Position of the separator, or end if there is none
+     */
+    private static int nextSeparator(String path, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (separatorLength(path, i, end) > 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int separatorLength(String path, int position, int end) {
+        if (position >= end) {
+            return 0;
+        }
+        if (path.charAt(position) == ',') {
+            return 1;
+        }
+        return position + ENCODED_SEPARATOR.length() <= end
+                && path.regionMatches(true, position, ENCODED_SEPARATOR, 0, ENCODED_SEPARATOR.length()) ? ENCODED_SEPARATOR.length() : 0;
+    }
+
+    /**
+     * Resolves indexes of the request to their communes with a single SDK call, together with
+     * the indexes of its bulk operations or msearch items.
+     * The result is kept, so the endpoint must not be shared between requests
+     * @param request Request this endpoint was created for
+     * @return Map from logical index of the request URL to its commune
+     */
+    public Map<String, String> resolveIndexes(RequestT request) {
+        if (communes == null) {
+            List<String> indexIds = expandPatterns(getIndex(path(request)));
+            List<List<String>> searches = new ArrayList<>();
+            if (request instanceof MsearchRequest msearch) {
+                for (RequestItem item : msearch.searches()) {
+                    List<String> itemIndexes = item.header().index();
+                    searches.add(itemIndexes.isEmpty() ? List.of() : checkExpanded(itemIndexes, sdk.expandIndexPatterns(itemIndexes)));
+                }
+            }
+            Collection<String> all = allIndexes(request, indexIds, searches);
+            resolved(indexIds, searches, all, sdk.transformIndexIds(all));
+        }
+        return communes;
+    }
+
+    /**
+     * Resolves indexes of the request to their communes without blocking the caller, together with
+     * the indexes of its bulk operations or msearch items.
+     * Once completed, {@link #resolveIndexes}, {@link #requestUrl} and {@link #rewrite} reuse the result
+     * @param request Request this endpoint was created for
+     * @return Stage completed with map from logical index of the request URL to its commune
+     */
+    public CompletionStage<Map<String, String>> resolveIndexesAsync(RequestT request) {
+        if (communes != null) {
+            return CompletableFuture.completedFuture(communes);
+        }
+        List<String> indexIds;
+        try {
+            indexIds = getIndex(path(request));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<List<String>> expanded = sdk.expandIndexPatternsAsync(indexIds)
+                .thenApply(expandedIds -> checkExpanded(indexIds, expandedIds))
+                .toCompletableFuture();
+        List<CompletableFuture<List<String>>> searches = new ArrayList<>();
+        if (request instanceof MsearchRequest msearch) {
+            // Patterns of the searches are expanded concurrently, their names share one load
+            for (RequestItem item : msearch.searches()) {
+                List<String> itemIndexes = item.header().index();
+                searches.add(itemIndexes.isEmpty()
+                        ? CompletableFuture.completedFuture(List.of())
+                        : sdk.expandIndexPatternsAsync(itemIndexes)
+                                .thenApply(expandedIds -> checkExpanded(itemIndexes, expandedIds))
+                                .toCompletableFuture());
+            }
+        }
+        return CompletableFuture.allOf(searches.toArray(CompletableFuture[]::new))
+                .thenCombine(expanded, (ignored, expandedIds) -> expandedIds)
+                .thenCompose(expandedIds -> {
+                    List<List<String>> searchIds = searches.stream().map(CompletableFuture::join).toList();
+                    Collection<String> all = allIndexes(request, expandedIds, searchIds);
+                    return sdk.transformIndexIdsAsync(all)
+                            .thenApply(resolved -> resolved(expandedIds, searchIds, all, resolved));
+                });
+    }
+
+    /**
+     * Returns indexes of the URL followed by the indexes named in the request body,
+     * or the URL indexes themselves if the body names none
+     */
+    private static Collection<String> allIndexes(Object request, List<String> indexIds, List<List<String>> searches) {
+        Set<String> bodyIndexes = request instanceof BulkRequest bulk ? BulkRequestRewriter.operationIndexes(bulk) : Set.of();
+        if (bodyIndexes.isEmpty() && searches.isEmpty()) {
+            return indexIds;
+        }
+        Set<String> all = new LinkedHashSet<>(indexIds);
+        all.addAll(bodyIndexes);
+        searches.forEach(all::addAll);
+        return all;
+    }
+
+    private Map<String, String> resolved(List<String> indexIds, List<List<String>> searches, Collection<String> all,
+                                         Map<String, String> resolved) {
+        searchIndexes = searches;
+        bodyCommunes = resolved;
+        if (all == indexIds) {
+            communes = resolved;
+        } else {
+            communes = new LinkedHashMap<>();
+            for (String indexId : indexIds) {
+                communes.put(indexId, resolved.get(indexId));
+            }
+        }
+        return communes;
+    }
+
+    /**
+     * Restricts the request to the documents of its resolved indexes. The endpoint keeps the
+     * communes of bulk operations and searches, so their responses report the logical index of every item
+     * @param request Request this endpoint was created for, its indexes must be resolved
+     * @return Rewritten request, or the request itself if it needs no rewrite
+     */
+    public RequestT rewrite(RequestT request) {
+        List<Map<String, String>> items = new ArrayList<>();
+        RequestT rewritten = RequestRewriters.rewrite(request, sdk, resolveIndexes(request), bodyCommunes, searchIndexes, items);
+        itemCommunes = items;
+        return rewritten;
+    }
+
+    /**
+     * Replaces index patterns with the logical indexes they match, so patterns never reach
+     * the mapping store. A request whose patterns match nothing fails like a missing index,
+     * sending it on would search every commune unfiltered
+     */
+    private List<String> expandPatterns(List<String> indexIds) {
+        return checkExpanded(indexIds, sdk.expandIndexPatterns(indexIds));
+    }
+
+    private static List<String> checkExpanded(List<String> indexIds, List<String> expanded) {
+        if (expanded.isEmpty() && !indexIds.isEmpty()) {
+            throw OmniaTransport.indexNotFound(String.join(",", indexIds));
+        }
+        return expanded;
     }
 
     @Override
     public JsonpDeserializer<ResponseT> responseDeserializer() {
         if (endpoint instanceof JsonEndpoint<RequestT, ResponseT, ErrorT>) {
-            return ((JsonEndpoint<RequestT, ResponseT, ErrorT>) endpoint).responseDeserializer();
+            JsonpDeserializer<ResponseT> deserializer = ((JsonEndpoint<RequestT, ResponseT, ErrorT>) endpoint).responseDeserializer();
+            // Hits and documents report the logical index instead of the commune
+            return communes != null
+                    ? LogicalIndexDeserializer.of(deserializer, communes, itemCommunes, sdk.getFilterField())
+                    : deserializer;
         } else {
             throw new IllegalArgumentException("Expected JsonEndpooint");
         }
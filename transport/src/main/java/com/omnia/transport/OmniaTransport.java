@@ -3,93 +3,380 @@ package com.omnia.transport;
 import org.opensearch.client.json.JsonpMapper;
 import org.opensearch.client.opensearch._types.ErrorResponse;
 import org.opensearch.client.opensearch._types.OpenSearchException;
-import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
 import org.opensearch.client.opensearch.indices.CreateIndexRequest;
+import org.opensearch.client.opensearch.indices.CreateIndexResponse;
+import org.opensearch.client.opensearch.indices.DeleteIndexRequest;
+import org.opensearch.client.opensearch.indices.DeleteIndexResponse;
 import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.JsonEndpoint;
 import org.opensearch.client.transport.OpenSearchTransport;
 import org.opensearch.client.transport.Transport;
 import org.opensearch.client.transport.TransportOptions;
 
+import com.omnia.common.config.Config;
+import com.omnia.sdk.IndexDeletedException;
 import com.omnia.sdk.OmniaSDK;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class OmniaTransport implements OpenSearchTransport {
+    private static final int TOO_MANY_REQUESTS = 429;
+
     private final Transport delegate;
     private final OmniaSDK sdk;
+    private final IndexProvisioner provisioner;
+    private final IndexDeleter deleter;
+    private final WriteCoalescer writeCoalescer;
+    private final SearchCoalescer searchCoalescer;
+    private final AdmissionController admission;
+    private final TenantRateLimiter rateLimiter;
 
     public OmniaTransport(Transport delegate, OmniaSDK sdk) {
+        this(delegate, sdk, new Config());
+    }
+
+    public OmniaTransport(Transport delegate, OmniaSDK sdk, Config config) {
         this.delegate = delegate;
         this.sdk = sdk;
+        this.provisioner = new IndexProvisioner(delegate, sdk, config);
+        this.deleter = new IndexDeleter(delegate, sdk, config.getDeletionRequestsPerSecond(),
+                config.getDeletionSlices(), config.getDeletionPollSeconds());
+        this.writeCoalescer = config.getWriteCoalescing()
+                ? new WriteCoalescer((commune, bulk) -> sendBatchAsync(commune, bulk, BulkRequest._ENDPOINT),
+                        config.getWriteCoalescingMaxOperations(), config.getWriteCoalescingMaxBytes(),
+                        config.getWriteCoalescingLingerMillis())
+                : null;
+        this.searchCoalescer = config.getSearchCoalescing()
+                ? new SearchCoalescer(this::sendBatchAsync, config.getSearchCoalescingMaxSearches(),
+                        config.getSearchCoalescingLingerMillis())
+                : null;
+        this.admission = config.getAdmissionControl()
+                ? new AdmissionController(config.getAdmissionInitialLimit(), config.getAdmissionMinLimit(),
+                        config.getAdmissionMaxLimit(), config.getAdmissionMaxQueued(),
+                        config.getAdmissionLatencyThresholdMillis(), config.getAdmissionBackoffRatio())
+                : null;
+        this.rateLimiter = config.getRateLimiting()
+                ? new TenantRateLimiter(sdk, config.getRateLimitReadsPerSecond(), config.getRateLimitWritesPerSecond(),
+                        config.getRateLimitBurstSeconds(), config.getRateLimitMaxTenants(), config.getRateLimitRefreshSeconds())
+                : null;
+        if (rateLimiter != null) {
+            rateLimiter.start();
+        }
+    }
+
+    /**
+     * Creates several logical indexes at once. Indexes are registered in the mapping store,
+     * the mappings are merged into their communes only if they add fields
+     * @param indexIds Logical indexes to create
+     * @param mappings Mappings of the indexes, may be null
+     * @return Map from index to its commune
+     */
+    public Map<String, String> createIndexes(Collection<String> indexIds, @Nullable TypeMapping mappings) throws IOException {
+        return await(provisioner.createIndexes(indexIds, mappings));
+    }
+
+    /**
+     * Asynchronous variant of {@link #createIndexes}
+     */
+    public CompletableFuture<Map<String, String>> createIndexesAsync(Collection<String> indexIds, @Nullable TypeMapping mappings) {
+        return provisioner.createIndexes(indexIds, mappings);
+    }
+
+    /**
+     * Deletes several logical indexes at once. Indexes are hidden right away,
+     * their documents are removed from the communes in the background
+     * @param indexIds Logical indexes to delete
+     * @return Map from deleted index to its commune, indexes that do not exist are missing
+     */
+    public Map<String, String> deleteIndexes(Collection<String> indexIds) throws IOException {
+        return await(deleter.deleteIndexes(indexIds));
+    }
+
+    /**
+     * Returns deleted indexes whose documents are still being removed by this transport
+     * @return Logical indexes with running deletion tasks
+     */
+    public Set<String> pendingDeletions() {
+        return deleter.pendingDeletions();
+    }
+
+    /**
+     * Returns admission state of every commune, empty if admission control is disabled
+     * @return Map from commune to its limit, in-flight, queued and rejected requests
+     */
+    public Map<String, AdmissionController.CommuneStats> admissionStats() {
+        return admission != null ? admission.stats() : Map.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ResponseT> CompletableFuture<ResponseT> deleteIndex(DeleteIndexRequest request) {
+        Set<String> requested = new LinkedHashSet<>(request.index());
+        // Existing indexes are deleted even if the request fails on a missing one
+        return deleter.deleteIndexes(requested)
+                .thenApply(deleted -> {
+                    if (!Boolean.TRUE.equals(request.ignoreUnavailable())) {
+                        for (String indexId : requested) {
+                            if (!deleted.containsKey(indexId)) {
+                                throw new CompletionException(indexNotFound(indexId));
+                            }
+                        }
+                    }
+                    return (ResponseT) DeleteIndexResponse.of(r -> r.acknowledged(true));
+                });
+    }
+
+    static OpenSearchException indexNotFound(String indexId) {
+        return new OpenSearchException(ErrorResponse.of(r -> r
+                .status(404)
+                .error(e -> e.type("index_not_found_exception").reason("no such index [" + indexId + "]"))));
+    }
+
+    static OpenSearchException illegalArgument(String reason) {
+        return new OpenSearchException(ErrorResponse.of(r -> r
+                .status(400)
+                .error(e -> e.type("illegal_argument_exception").reason(reason))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ResponseT> CompletableFuture<ResponseT> createIndex(CreateIndexRequest request) {
+        // Logical index creation never reaches cluster state unless the commune needs new fields
+        return provisioner.createIndexes(List.of(request.index()), request.mappings())
+                .thenApply(communes -> (ResponseT) CreateIndexResponse.of(r -> r
+                        .index(request.index())
+                        .acknowledged(true)
+                        .shardsAcknowledged(true)));
     }
 
     @Override
     public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, @Nullable TransportOptions options) throws IOException {
-        final OmniaEndpoint<RequestT, ResponseT, ErrorT> customEndpoint = new OmniaEndpoint<>(endpoint, sdk);
-        QueryMapper mapper = new QueryMapper();
-        Query combinedQuery = (Query) mapper.executeQuery(request);
-        if (combinedQuery == null) {
-            try {
-                return delegate.performRequest(request, customEndpoint, options);
-            } catch (OpenSearchException e) {
-                if (Objects.equals(e.error().type(), "resource_already_exists_exception") && request instanceof CreateIndexRequest) {
-                    return null;
-                }
-                throw new OpenSearchException(e.response());
-            }
+        try {
+            return send(request, endpoint, options);
+        } catch (IndexDeletedException e) {
+            throw indexNotFound(e.getIndexId());
+        }
+    }
 
+    private <RequestT, ResponseT, ErrorT> ResponseT send(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) throws IOException {
+        if (request instanceof CreateIndexRequest create) {
+            return await(createIndex(create));
+        }
+        if (request instanceof DeleteIndexRequest delete) {
+            return await(deleteIndex(delete));
+        }
+        CompletableFuture<ResponseT> coalesced = coalesce(request, endpoint, options,
+                index -> CompletableFuture.completedFuture(sdk.transformIndexId(index)));
+        if (coalesced != null) {
+            return await(coalesced);
+        }
+        final OmniaEndpoint<RequestT, ResponseT, ErrorT> customEndpoint = new OmniaEndpoint<>(endpoint, sdk);
+        Map<String, String> communes = customEndpoint.resolveIndexes(request);
+        throttle(request, communes.keySet());
+        RequestT rewritten = customEndpoint.rewrite(request);
+        if (communes.isEmpty() && rewritten == request) {
+            // Endpoint does not target logical indexes
+            return delegate.performRequest(request, endpoint, options);
         }
-        List<String> Indexes = customEndpoint.getIndex(endpoint.requestUrl(request));
-        for (var x : Indexes) {
-            combinedQuery = sdk.addIndexFilter(combinedQuery, x);
+        String commune = singleCommune(communes);
+        if (admission == null || commune == null) {
+            return sendDelegate(rewritten, customEndpoint, options);
         }
+        await(admission.acquire(commune));
+        long start = System.nanoTime();
+        boolean overloaded = false;
         try {
-            mapper.updatePrivateFields(request, combinedQuery);
-            return delegate.performRequest(request, customEndpoint, options);
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
+            return sendDelegate(rewritten, customEndpoint, options);
+        } catch (OpenSearchException e) {
+            overloaded = e.status() == TOO_MANY_REQUESTS;
+            throw e;
+        } finally {
+            admission.release(commune, System.nanoTime() - start, overloaded);
+        }
+    }
+
+    private <RequestT, ResponseT, ErrorT> ResponseT sendDelegate(RequestT request, OmniaEndpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) throws IOException {
+        try {
+            return delegate.performRequest(request, endpoint, options);
         } catch (OpenSearchException e) {
-            if (Objects.equals(e.error().type(), "resource_already_exists_exception") && request instanceof CreateIndexRequest) {
-                return null;
-            }
             throw new OpenSearchException(e.response());
         }
     }
 
-    @Override
-    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, @Nullable TransportOptions options) {
-        final OmniaEndpoint<RequestT, ResponseT, ErrorT> customEndpoint = new OmniaEndpoint<>(endpoint, sdk);
-        QueryMapper mapper = new QueryMapper();
-        Query combinedQuery = (Query) mapper.executeQuery(request);
-        if (combinedQuery == null) {
+    /**
+     * Sends the request within the admission limit of its commune
+     * @param commune Commune the request targets, null if the request is not limited
+     * @param send Sends the request once it is admitted
+     * @return Future of the response, failed with a 429 if the commune rejected the request
+     */
+    private <ResponseT> CompletableFuture<ResponseT> admit(String commune, Supplier<CompletableFuture<ResponseT>> send) {
+        if (admission == null || commune == null) {
+            return send.get();
+        }
+        return admission.acquire(commune).thenCompose(admitted -> {
+            long start = System.nanoTime();
+            CompletableFuture<ResponseT> response;
             try {
-                return delegate.performRequestAsync(request, customEndpoint, options);
-            } catch (OpenSearchException e) {
-                if (Objects.equals(e.error().type(), "resource_already_exists_exception") && request instanceof CreateIndexRequest) {
-                    return null;
-                }
-                throw new OpenSearchException(e.response());
+                response = send.get();
+            } catch (RuntimeException e) {
+                admission.release(commune, System.nanoTime() - start, false);
+                throw e;
+            }
+            return response.whenComplete((result, e) -> admission.release(commune, System.nanoTime() - start, isTooManyRequests(e)));
+        });
+    }
+
+    /**
+     * Returns the commune of a request targeting a single commune, requests spanning
+     * several communes are not limited
+     */
+    private static String singleCommune(Map<String, String> communes) {
+        String single = null;
+        for (String commune : communes.values()) {
+            if (commune == null || (single != null && !single.equals(commune))) {
+                return null;
             }
+            single = commune;
         }
-        List<String> Indexes = customEndpoint.getIndex(endpoint.requestUrl(request));
-        for (var x : Indexes) {
-            combinedQuery = sdk.addIndexFilter(combinedQuery, x);
+        return single;
+    }
+
+    /**
+     * Takes rate limit tokens of the logical indexes, before the request waits for admission
+     * @throws TenantThrottledException if an index is over its rate limit
+     */
+    private void throttle(Object request, Collection<String> indexIds) {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(request, indexIds);
         }
+    }
+
+    private static boolean isTooManyRequests(Throwable e) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        return cause instanceof OpenSearchException openSearchException && openSearchException.status() == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Queues the request into a write or search batch of its commune
+     * @return Future of the response, or null if the request is sent on its own
+     */
+    @SuppressWarnings("unchecked")
+    private <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> coalesce(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                TransportOptions options, Function<String, CompletionStage<String>> communeOf) {
+        if (options != null) {
+            // Batches are sent with default options
+            return null;
+        }
+        if (writeCoalescer != null && WriteCoalescer.isCoalescible(request)) {
+            String index = WriteCoalescer.indexOf(request);
+            throttle(request, List.of(index));
+            return communeOf.apply(index)
+                    .thenCompose(commune -> writeCoalescer.submit(commune, request))
+                    .thenApply(response -> (ResponseT) response)
+                    .toCompletableFuture();
+        }
+        if (searchCoalescer != null && SearchCoalescer.isCoalescible(request) && endpoint instanceof JsonEndpoint<RequestT, ResponseT, ErrorT> json) {
+            SearchRequest search = (SearchRequest) request;
+            throttle(request, search.index());
+            return communeOf.apply(search.index().get(0))
+                    .thenCompose(commune -> searchCoalescer.submit(commune, search, json.responseDeserializer()))
+                    .toCompletableFuture();
+        }
+        return null;
+    }
+
+    private static <ResponseT> ResponseT await(CompletableFuture<ResponseT> response) throws IOException {
         try {
-            mapper.updatePrivateFields(request, combinedQuery);
-            return delegate.performRequestAsync(request, customEndpoint, options);
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
-        } catch (OpenSearchException e) {
-            if (Objects.equals(e.error().type(), "resource_already_exists_exception") && request instanceof CreateIndexRequest) {
-                return null;
+            return response.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OpenSearchException openSearchException) {
+                throw new OpenSearchException(openSearchException.response());
             }
-            throw new OpenSearchException(e.response());
+            if (cause instanceof IndexDeletedException deleted) {
+                throw indexNotFound(deleted.getIndexId());
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, @Nullable TransportOptions options) {
+        return mapErrors(() -> sendAsync(request, endpoint, options, false));
+    }
+
+    /**
+     * Sends a batch built by a coalescer. Every caller in the batch was already rate limited
+     * when it was queued, so the batch is not charged again. The batch is admitted as one
+     * request of its commune once it is sent, callers do not hold admission slots while it lingers
+     */
+    private <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> sendBatchAsync(String commune, RequestT batch,
+                                                                                     Endpoint<RequestT, ResponseT, ErrorT> endpoint) {
+        return mapErrors(() -> admit(commune, () -> sendAsync(batch, endpoint, null, true)));
+    }
+
+    private static <ResponseT> CompletableFuture<ResponseT> mapErrors(Supplier<CompletableFuture<ResponseT>> send) {
+        CompletableFuture<ResponseT> response;
+        try {
+            response = send.get();
+        } catch (IndexDeletedException e) {
+            return CompletableFuture.failedFuture(indexNotFound(e.getIndexId()));
+        } catch (TenantThrottledException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // Deleted indexes look missing, as they would in OpenSearch
+        return response.exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            return CompletableFuture.failedFuture(cause instanceof IndexDeletedException deleted ? indexNotFound(deleted.getIndexId()) : e);
+        });
+    }
+
+    private <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> sendAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint,
+                                                                                TransportOptions options, boolean batch) {
+        if (request instanceof CreateIndexRequest create) {
+            return createIndex(create);
+        }
+        if (request instanceof DeleteIndexRequest delete) {
+            return deleteIndex(delete);
         }
+        // Single-document writes and searches of concurrent callers are sent as one request per commune
+        CompletableFuture<ResponseT> coalesced = coalesce(request, endpoint, options, sdk::transformIndexIdAsync);
+        if (coalesced != null) {
+            return coalesced;
+        }
+        final OmniaEndpoint<RequestT, ResponseT, ErrorT> customEndpoint = new OmniaEndpoint<>(endpoint, sdk);
+        // Communes are resolved off the caller thread, the delegate is called once they are known
+        return customEndpoint.resolveIndexesAsync(request)
+                .thenCompose(communes -> {
+                    if (!batch) {
+                        throttle(request, communes.keySet());
+                    }
+                    RequestT rewritten = customEndpoint.rewrite(request);
+                    if (communes.isEmpty() && rewritten == request) {
+                        return delegate.performRequestAsync(request, endpoint, options);
+                    }
+                    // Batches are admitted by their sender
+                    return admit(batch ? null : singleCommune(communes), () -> delegate.performRequestAsync(rewritten, customEndpoint, options));
+                })
+                .toCompletableFuture();
     }
 
     @Override
@@ -104,6 +391,16 @@ public class OmniaTransport implements OpenSearchTransport {
 
     @Override
     public void close() throws IOException {
+        deleter.close();
+        if (rateLimiter != null) {
+            rateLimiter.close();
+        }
+        if (writeCoalescer != null) {
+            writeCoalescer.close();
+        }
+        if (searchCoalescer != null) {
+            searchCoalescer.close();
+        }
         delegate.close();
     }
 }
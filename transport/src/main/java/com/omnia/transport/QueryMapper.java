@@ -5,12 +5,25 @@ import org.opensearch.client.opensearch._types.query_dsl.MatchQuery;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch._types.query_dsl.TermQuery;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 
+/**
+ * Reads and replaces queries of request objects. Accessors are resolved
+ * once per request class and kept in a {@link ClassValue}, so that requests
+ * are not scanned with reflection on every call.
+ */
 public class QueryMapper {
+    private static final ClassValue<QueryAccessor> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected QueryAccessor computeValue(Class<?> type) {
+            return QueryAccessor.resolve(type);
+        }
+    };
 
     public Query mapToQuery(Map<String, String> params) {
         return Query.of(q -> q
@@ -44,19 +57,106 @@ public class QueryMapper {
         }
     }
 
+    /**
+     * Replaces query of the request in place
+     * @param target Request object holding a {@code query} field
+     * @param fieldValues New query
+     * @throws NoSuchFieldException if the request class has no {@code query} field
+     * @throws IllegalAccessException if the field cannot be made accessible
+     */
     public void updatePrivateFields(Object target, Query fieldValues)
             throws NoSuchFieldException, IllegalAccessException {
-        Class<?> clazz = target.getClass();
-        Field queryField = findQueryField(clazz);
-        if (queryField == null) {
+        QueryAccessor accessor = ACCESSORS.get(target.getClass());
+        if (accessor.setter == null) {
+            if (accessor.setterFailure != null) {
+                throw new IllegalAccessException("Access denied for query field: " + accessor.setterFailure);
+            }
             throw new NoSuchFieldException(
                     "Field 'query' not found in class hierarchy");
         }
         try {
-            queryField.setAccessible(true);
-            queryField.set(target, fieldValues);
-        } catch (SecurityException e) {
-            throw new IllegalAccessException("Security manager blocked access to field: " + e.getMessage());
+            accessor.setter.invokeExact(target, (Object) fieldValues);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Query field update failed", e);
+        }
+    }
+
+    /**
+     * Reads query of the request
+     * @param obj Request object
+     * @return Query of the request or null if the request has no query
+     */
+    public Object executeQuery(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        QueryAccessor accessor = ACCESSORS.get(obj.getClass());
+        if (accessor.getter == null) {
+            return null;
+        }
+        try {
+            return accessor.getter.invokeExact(obj);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Query method execution failed", e);
+        }
+    }
+
+    /**
+     * Accessors of the {@code query} method and field of a request class.
+     * Resolved once per class, classes without a query get the shared {@link #NONE} instance
+     */
+    private static final class QueryAccessor {
+        static final QueryAccessor NONE = new QueryAccessor(null, null, null);
+
+        // (Object) Object
+        final MethodHandle getter;
+        // (Object, Object) void
+        final MethodHandle setter;
+        final String setterFailure;
+
+        QueryAccessor(MethodHandle getter, MethodHandle setter, String setterFailure) {
+            this.getter = getter;
+            this.setter = setter;
+            this.setterFailure = setterFailure;
+        }
+
+        static QueryAccessor resolve(Class<?> type) {
+            MethodHandle getter = resolveGetter(type);
+            MethodHandle setter = null;
+            String setterFailure = null;
+            Field field = findQueryField(type);
+            if (field != null) {
+                try {
+                    // Request classes keep the query in a final field, only an unreflected setter can write it
+                    field.setAccessible(true);
+                    setter = MethodHandles.lookup().unreflectSetter(field)
+                            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException | RuntimeException e) {
+                    setterFailure = e.getMessage();
+                }
+            }
+            if (getter == null && setter == null && setterFailure == null) {
+                return NONE;
+            }
+            return new QueryAccessor(getter, setter, setterFailure);
+        }
+
+        private static MethodHandle resolveGetter(Class<?> type) {
+            Method method = findQueryMethod(type);
+            if (method == null) {
+                return null;
+            }
+            try {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method)
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Access denied for query method", e);
+            }
         }
     }
 
@@ -72,29 +172,6 @@ public class QueryMapper {
         return null;
     }
 
-    public Object executeQuery(Object obj) {
-        if (obj == null) {
-            return null;
-        }
-        try {
-            Method queryMethod = findQueryMethod(obj.getClass());
-            if (queryMethod != null) {
-                queryMethod.setAccessible(true);
-                return queryMethod.invoke(obj);
-            }
-        } catch (InvocationTargetException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof RuntimeException) {
-                throw (RuntimeException) cause;
-            } else {
-                throw new RuntimeException("Query method execution failed", cause);
-            }
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException("Access denied for query method", e);
-        }
-        return null;
-    }
-
     private static Method findQueryMethod(Class<?> clazz) {
         while (clazz != null) {
             for (Method method : clazz.getDeclaredMethods()) {
@@ -0,0 +1,23 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+
+import java.util.Map;
+
+/**
+ * Restricts a request of one endpoint family to the documents of its logical indexes.
+ * Rewriters never modify the request, they return a rebuilt copy
+ * @param <RequestT> Request type
+ */
+@FunctionalInterface
+public interface RequestRewriter<RequestT> {
+    /**
+     * Rewrites the request
+     * @param request Original request, left unchanged
+     * @param sdk SDK providing filters and routing of the indexes, rewriters do not resolve communes with it
+     * @param communes Map from logical index to its commune, holding the indexes of the request URL
+     * and every index named in the request body
+     * @return Rewritten request, or the request itself if nothing had to be changed
+     */
+    RequestT rewrite(RequestT request, OmniaSDK sdk, Map<String, String> communes);
+}
@@ -0,0 +1,313 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.CountRequest;
+import org.opensearch.client.opensearch.core.DeleteByQueryRequest;
+import org.opensearch.client.opensearch.core.DeleteRequest;
+import org.opensearch.client.opensearch.core.ExistsRequest;
+import org.opensearch.client.opensearch.core.ExplainRequest;
+import org.opensearch.client.opensearch.core.GetRequest;
+import org.opensearch.client.opensearch.core.GetSourceRequest;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.MgetRequest;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.MsearchTemplateRequest;
+import org.opensearch.client.opensearch.core.MtermvectorsRequest;
+import org.opensearch.client.opensearch.core.RankEvalRequest;
+import org.opensearch.client.opensearch.core.ReindexRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchTemplateRequest;
+import org.opensearch.client.opensearch.core.TermvectorsRequest;
+import org.opensearch.client.opensearch.core.UpdateByQueryRequest;
+import org.opensearch.client.opensearch.core.UpdateRequest;
+import org.opensearch.client.opensearch.core.msearch.MultisearchBody;
+import org.opensearch.client.opensearch.core.msearch.MultisearchHeader;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.opensearch.indices.ValidateQueryRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Registry of typed {@link RequestRewriter}s by request class.
+ * Requests of other types only get the index segment of their path rewritten, except requests
+ * reading documents the transport cannot restrict to logical indexes, which are rejected.
+ */
+public final class RequestRewriters {
+    private static final Query MATCH_ALL = Query.of(q -> q.matchAll(m -> m));
+    // On a commune they would read the documents of every logical index sharing it
+    private static final Set<Class<?>> REJECTED = Set.of(MgetRequest.class, MtermvectorsRequest.class,
+            TermvectorsRequest.class, SearchTemplateRequest.class, MsearchTemplateRequest.class, ReindexRequest.class,
+            RankEvalRequest.class, ValidateQueryRequest.class);
+
+    private static final Map<Class<?>, RequestRewriter<?>> REWRITERS = Map.ofEntries(
+            filtered(SearchRequest.class, SearchRequest::query, SearchRequest::routing,
+                    (request, query, routing) -> request.toBuilder().query(query).routing(routing).build()),
+            filtered(CountRequest.class, CountRequest::query, CountRequest::routing,
+                    (request, query, routing) -> request.toBuilder().query(query).routing(routing).build()),
+            filtered(DeleteByQueryRequest.class, DeleteByQueryRequest::query, DeleteByQueryRequest::routing,
+                    (request, query, routing) -> request.toBuilder().query(query).routing(routing).build()),
+            filtered(UpdateByQueryRequest.class, UpdateByQueryRequest::query, UpdateByQueryRequest::routing,
+                    (request, query, routing) -> request.toBuilder().query(query).routing(routing).build()),
+            filtered(ExplainRequest.class, ExplainRequest::query, ExplainRequest::routing,
+                    (request, query, routing) -> request.toBuilder().query(query).routing(routing).build()),
+            Map.entry(MsearchRequest.class, (RequestRewriter<MsearchRequest>) (request, sdk, communes) ->
+                    rewriteMsearch(request, sdk, communes, communes, itemIndexes(request), new ArrayList<>())),
+            Map.entry(BulkRequest.class, new BulkRequestRewriter()),
+            // Single-document requests only need routing, the URL already targets the commune
+            RequestRewriters.<IndexRequest<Object>>routed(IndexRequest.class, IndexRequest::routing,
+                    (request, routing) -> request.toBuilder().routing(routing).build()),
+            RequestRewriters.<UpdateRequest<Object, Object>>routed(UpdateRequest.class, UpdateRequest::routing,
+                    (request, routing) -> request.toBuilder().routing(routing).build()),
+            routed(DeleteRequest.class, DeleteRequest::routing, (request, routing) -> request.toBuilder().routing(routing).build()),
+            routed(GetRequest.class, GetRequest::routing, (request, routing) -> request.toBuilder().routing(routing).build()),
+            routed(ExistsRequest.class, ExistsRequest::routing, (request, routing) -> request.toBuilder().routing(routing).build()),
+            routed(GetSourceRequest.class, GetSourceRequest::routing, (request, routing) -> request.toBuilder().routing(routing).build())
+    );
+
+    private RequestRewriters() {
+    }
+
+    /**
+     * Restricts the request to the documents of its logical indexes
+     * @param request Original request
+     * @param sdk SDK providing filters and routing of the indexes
+     * @param communes Map from logical index to its commune, holding the indexes of the request URL
+     * and every index named by its bulk operations or msearch items
+     * @return Rewritten request, or the request itself if it needs no rewrite
+     */
+    @SuppressWarnings("unchecked")
+    public static <RequestT> RequestT rewrite(RequestT request, OmniaSDK sdk, Map<String, String> communes) {
+        RequestRewriter<RequestT> rewriter = (RequestRewriter<RequestT>) REWRITERS.get(request.getClass());
+        if (rewriter != null) {
+            return rewriter.rewrite(request, sdk, communes);
+        }
+        if (communes.isEmpty() || !REJECTED.contains(request.getClass())) {
+            return request;
+        }
+        throw OmniaTransport.illegalArgument("request type [" + request.getClass().getSimpleName()
+                + "] cannot be restricted to logical indexes");
+    }
+
+    /**
+     * Rewrites the request like {@link #rewrite(Object, OmniaSDK, Map)} and collects the communes
+     * of its bulk operations or searches, so that their responses can be renamed item by item.
+     * Every index is resolved by the caller, the SDK is not asked for communes
+     * @param communes Map from index of the request URL to its commune
+     * @param bodyCommunes Map from logical index to its commune, holding every index of the URL and of the body
+     * @param searchIndexes Expanded indexes of every msearch item, empty for items searching the URL indexes
+     * @param itemCommunes Receives map from logical index to commune of every operation or search, in request order
+     */
+    @SuppressWarnings("unchecked")
+    static <RequestT> RequestT rewrite(RequestT request, OmniaSDK sdk, Map<String, String> communes,
+                                       Map<String, String> bodyCommunes, List<List<String>> searchIndexes,
+                                       List<Map<String, String>> itemCommunes) {
+        if (request instanceof MsearchRequest msearch) {
+            return (RequestT) rewriteMsearch(msearch, sdk, communes, bodyCommunes, searchIndexes, itemCommunes);
+        }
+        RequestT rewritten = rewrite(request, sdk, request instanceof BulkRequest ? bodyCommunes : communes);
+        if (rewritten instanceof BulkRequest bulk) {
+            BulkRequestRewriter.collectCommunes(bulk, communes, itemCommunes);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Rewriter of requests holding a query, which get the filter and the routing of their indexes
+     * @param type Request class
+     * @param query Reads the query of a request
+     * @param routing Reads the routing set by the caller
+     * @param rebuild Copies a request with the filtered query and the routing
+     */
+    private static <RequestT> Map.Entry<Class<?>, RequestRewriter<?>> filtered(Class<?> type, Function<RequestT, Query> query,
+                                                                               Function<RequestT, String> routing,
+                                                                               QueryRebuild<RequestT> rebuild) {
+        return Map.entry(type, (RequestRewriter<RequestT>) (request, sdk, communes) -> communes.isEmpty()
+                ? request
+                : rebuild.apply(request, filter(sdk, query.apply(request), communes),
+                        routing(sdk, routing.apply(request), communes.keySet())));
+    }
+
+    /**
+     * Rewriter of single-document requests, which only get the routing of their index
+     * @param type Request class
+     * @param routing Reads the routing set by the caller
+     * @param rebuild Copies a request with the routing
+     */
+    private static <RequestT> Map.Entry<Class<?>, RequestRewriter<?>> routed(Class<?> type, Function<RequestT, String> routing,
+                                                                             BiFunction<RequestT, String, RequestT> rebuild) {
+        return Map.entry(type, (RequestRewriter<RequestT>) (request, sdk, communes) ->
+                needsRouting(sdk, routing.apply(request), communes)
+                        ? rebuild.apply(request, routing(sdk, null, communes.keySet()))
+                        : request);
+    }
+
+    @FunctionalInterface
+    private interface QueryRebuild<RequestT> {
+        RequestT apply(RequestT request, Query query, String routing);
+    }
+
+    /**
+     * Adds filter of the indexes to the query, requests without a query get a filtered match_all
+     */
+    static Query filter(OmniaSDK sdk, Query query, Map<String, String> communes) {
+        if (communes.isEmpty()) {
+            return query;
+        }
+        return sdk.addIndexFilter(query != null ? query : MATCH_ALL, communes);
+    }
+
+    /**
+     * Returns routing of requests to the indexes. Several indexes are routed to the union
+     * of their shards, an index without routing needs every shard
+     * @param sdk SDK providing routing of the indexes
+     * @param explicit Routing set by the caller, it always wins
+     * @param indexIds Logical indexes of the request
+     * @return Routing value, or null to search every shard
+     */
+    static String routing(OmniaSDK sdk, String explicit, Collection<String> indexIds) {
+        if (explicit != null || indexIds.isEmpty()) {
+            return explicit;
+        }
+        Set<String> routings = new LinkedHashSet<>();
+        for (String indexId : indexIds) {
+            String routing = sdk.getRouting(indexId);
+            if (routing == null) {
+                return null;
+            }
+            routings.add(routing);
+        }
+        return String.join(",", routings);
+    }
+
+    private static boolean needsRouting(OmniaSDK sdk, String explicit, Map<String, String> communes) {
+        return explicit == null && communes.size() == 1
+                && sdk.getRouting(communes.keySet().iterator().next()) != null;
+    }
+
+    private static List<List<String>> itemIndexes(MsearchRequest request) {
+        return request.searches().stream().map(item -> item.header().index()).toList();
+    }
+
+    private static MsearchRequest rewriteMsearch(MsearchRequest request, OmniaSDK sdk, Map<String, String> communes,
+                                                 Map<String, String> bodyCommunes, List<List<String>> searchIndexes,
+                                                 List<Map<String, String>> itemCommunes) {
+        List<RequestItem> searches = new ArrayList<>(request.searches().size());
+        for (int n = 0; n < request.searches().size(); n++) {
+            RequestItem item = request.searches().get(n);
+            MultisearchHeader header = item.header();
+            if (header.index().isEmpty()) {
+                if (communes.isEmpty()) {
+                    // It would search every commune unfiltered
+                    throw OmniaTransport.illegalArgument("multi search items must name their logical indexes");
+                }
+                // Search targets indexes of the request URL
+                itemCommunes.add(communes);
+                Query query = filter(sdk, item.body().query(), communes);
+                String routing = routing(sdk, header.routing(), communes.keySet());
+                searches.add(query == item.body().query() && Objects.equals(routing, header.routing()) ? item : RequestItem.of(i -> i
+                        .header(copyHeader(header, header.index(), routing))
+                        .body(copyBody(item.body(), query))));
+            } else {
+                Map<String, String> searchCommunes = new LinkedHashMap<>();
+                for (String indexId : searchIndexes.get(n)) {
+                    searchCommunes.put(indexId, resolvedCommune(bodyCommunes, indexId));
+                }
+                itemCommunes.add(searchCommunes);
+                searches.add(RequestItem.of(i -> i
+                        .header(copyHeader(header, List.copyOf(new LinkedHashSet<>(searchCommunes.values())),
+                                routing(sdk, header.routing(), searchCommunes.keySet())))
+                        .body(copyBody(item.body(), filter(sdk, item.body().query(), searchCommunes)))));
+            }
+        }
+
+        // toBuilder() would append the rewritten searches to the original ones
+        return MsearchRequest.of(b -> {
+            b.allowNoIndices(request.allowNoIndices())
+                    .ccsMinimizeRoundtrips(request.ccsMinimizeRoundtrips())
+                    .ignoreThrottled(request.ignoreThrottled())
+                    .ignoreUnavailable(request.ignoreUnavailable())
+                    .maxConcurrentSearches(request.maxConcurrentSearches())
+                    .maxConcurrentShardRequests(request.maxConcurrentShardRequests())
+                    .preFilterShardSize(request.preFilterShardSize())
+                    .searchType(request.searchType())
+                    .searches(searches);
+            if (!request.index().isEmpty()) {
+                b.index(request.index());
+            }
+            if (!request.expandWildcards().isEmpty()) {
+                b.expandWildcards(request.expandWildcards());
+            }
+            return b;
+        });
+    }
+
+    /**
+     * Returns commune of an index named in the request body, rewriters never resolve indexes themselves
+     * @return Commune ID, or null if the SDK resolved the index to none
+     * @throws IllegalArgumentException if the caller did not resolve the index
+     */
+    static String resolvedCommune(Map<String, String> communes, String indexId) {
+        String commune = communes.get(indexId);
+        if (commune == null && !communes.containsKey(indexId)) {
+            throw new IllegalArgumentException("Commune of index [" + indexId + "] was not resolved before the rewrite");
+        }
+        return commune;
+    }
+
+    private static MultisearchHeader copyHeader(MultisearchHeader header, List<String> index, String routing) {
+        return MultisearchHeader.of(b -> {
+            b.allowNoIndices(header.allowNoIndices())
+                    .ignoreUnavailable(header.ignoreUnavailable())
+                    .preference(header.preference())
+                    .requestCache(header.requestCache())
+                    .routing(routing)
+                    .searchType(header.searchType());
+            if (!index.isEmpty()) {
+                b.index(index);
+            }
+            if (!header.expandWildcards().isEmpty()) {
+                b.expandWildcards(header.expandWildcards());
+            }
+            return b;
+        });
+    }
+
+    private static MultisearchBody copyBody(MultisearchBody body, Query query) {
+        return MultisearchBody.of(b -> {
+            b.query(query)
+                    .from(body.from())
+                    .minScore(body.minScore())
+                    .postFilter(body.postFilter())
+                    .size(body.size())
+                    .trackScores(body.trackScores())
+                    .trackTotalHits(body.trackTotalHits())
+                    .suggest(body.suggest())
+                    .highlight(body.highlight())
+                    .source(body.source());
+            if (!body.aggregations().isEmpty()) {
+                b.aggregations(body.aggregations());
+            }
+            if (!body.searchAfter().isEmpty()) {
+                b.searchAfter(body.searchAfter());
+            }
+            if (!body.sort().isEmpty()) {
+                b.sort(body.sort());
+            }
+            if (!body.scriptFields().isEmpty()) {
+                b.scriptFields(body.scriptFields());
+            }
+            return b;
+        });
+    }
+}
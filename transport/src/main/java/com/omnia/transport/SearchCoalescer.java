@@ -0,0 +1,316 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.LogicalIndexNames;
+import jakarta.json.JsonObject;
+import jakarta.json.stream.JsonParser;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.JsonpUtils;
+import org.opensearch.client.json.LookAheadJsonParser;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.transport.Endpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Merges concurrent single-index searches into one {@code _msearch} request per commune.
+ * A batch is sent when it reaches the search limit or when the linger time since its
+ * first search has passed. Searches keep their logical index in the item header, so the
+ * msearch rewriter adds the per-index filter to every item, and each caller gets the
+ * response of its own item. Items of the {@code _msearch} response are parsed one by one
+ * with the deserializers of their callers.
+ */
+public class SearchCoalescer implements AutoCloseable {
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final String RESPONSES_FIELD = "responses";
+    // First field of a failed item, or a field only results have
+    private static final Map<String, Boolean> ITEM_VARIANTS = Map.of("error", true, "took", false);
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchCoalescer.class);
+
+    private final Sender sender;
+    private final int maxSearches;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, List<Pending<?>>> batches = new HashMap<>();
+    private final Set<CompletableFuture<List<Runnable>>> inFlight = ConcurrentHashMap.newKeySet();
+    private boolean closed;
+
+    /**
+     * @param sender Sends the multi search request of a commune, items target logical indexes
+     * @param maxSearches Maximum number of searches in one msearch request
+     * @param lingerMillis How long the first search of a batch waits for more searches
+     */
+    public SearchCoalescer(Sender sender, int maxSearches, long lingerMillis) {
+        this.sender = sender;
+        this.maxSearches = maxSearches;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "omnia-search-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether the request can be sent as an msearch item. Searches of several
+     * indexes and searches with parameters that msearch items cannot carry cannot
+     * @param request Any request
+     * @return true for single-index searches that can be coalesced
+     */
+    public static boolean isCoalescible(Object request) {
+        if (!(request instanceof SearchRequest search) || search.index().size() != 1
+                || LogicalIndexNames.isPattern(search.index().get(0))) {
+            return false;
+        }
+        return search.scroll() == null && search.pit() == null && search.slice() == null
+                && search.collapse() == null && search.explain() == null && search.profile() == null
+                && search.version() == null && search.seqNoPrimaryTerm() == null
+                && search.terminateAfter() == null && search.timeout() == null
+                && search.q() == null && search.analyzer() == null && search.analyzeWildcard() == null
+                && search.defaultOperator() == null && search.df() == null && search.lenient() == null
+                && search.allowPartialSearchResults() == null && search.batchedReduceSize() == null
+                && search.ccsMinimizeRoundtrips() == null && search.ignoreThrottled() == null
+                && search.maxConcurrentShardRequests() == null && search.minCompatibleShardNode() == null
+                && search.preFilterShardSize() == null
+                && search.docvalueFields().isEmpty() && search.fields().isEmpty()
+                && search.storedFields().isEmpty() && search.indicesBoost().isEmpty()
+                && search.rescore().isEmpty() && search.runtimeMappings().isEmpty()
+                && search.stats().isEmpty();
+    }
+
+    /**
+     * Queues the search into the batch of its commune
+     * @param commune Commune of the search index
+     * @param request Search accepted by {@link #isCoalescible}
+     * @param deserializer Deserializer of the caller's search response
+     * @return Future completed with the search response
+     */
+    public <ResponseT> CompletableFuture<ResponseT> submit(String commune, SearchRequest request,
+                                                           JsonpDeserializer<ResponseT> deserializer) {
+        Pending<ResponseT> pending = new Pending<>(toItem(request),
+                LogicalIndexDeserializer.of(deserializer, Map.of(request.index().get(0), commune)));
+        List<Pending<?>> full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Search coalescer is closed");
+            }
+            List<Pending<?>> batch = batches.get(commune);
+            if (batch == null) {
+                List<Pending<?>> created = new ArrayList<>();
+                batches.put(commune, created);
+                scheduler.schedule(() -> flushLingering(commune, created), lingerMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(pending);
+            if (batch.size() >= maxSearches) {
+                batches.remove(commune);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(commune, full);
+        }
+        return pending.response;
+    }
+
+    private void flushLingering(String commune, List<Pending<?>> batch) {
+        synchronized (this) {
+            if (!batches.remove(commune, batch)) {
+                // Already sent because it filled up
+                return;
+            }
+        }
+        send(commune, batch);
+    }
+
+    private void send(String commune, List<Pending<?>> batch) {
+        List<RequestItem> searches = new ArrayList<>(batch.size());
+        for (Pending<?> pending : batch) {
+            searches.add(pending.item);
+        }
+        CompletableFuture<List<Runnable>> sent;
+        try {
+            sent = sender.send(commune, MsearchRequest.of(b -> b.searches(searches)),
+                    MsearchRequest._ENDPOINT.withResponseDeserializer(itemsDeserializer(batch)));
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        inFlight.add(sent);
+        CompletableFuture<List<Runnable>> request = sent;
+        sent.whenComplete((completions, e) -> {
+            inFlight.remove(request);
+            if (e != null) {
+                logger.warn("Failed to send {} coalesced searches", batch.size(), e);
+                batch.forEach(pending -> pending.response.completeExceptionally(e));
+                return;
+            }
+            // Callers run once the whole response is parsed
+            completions.forEach(Runnable::run);
+            for (int i = completions.size(); i < batch.size(); i++) {
+                batch.get(i).response.completeExceptionally(new IllegalStateException("Missing response of coalesced search " + i));
+            }
+        });
+    }
+
+    /**
+     * Parses the {@code _msearch} response, the item at every position is read by the deserializer
+     * of the search at that position
+     * @return Completions of the searches, in request order
+     */
+    private static JsonpDeserializer<List<Runnable>> itemsDeserializer(List<Pending<?>> batch) {
+        return JsonpDeserializer.of(EnumSet.of(JsonParser.Event.START_OBJECT), (parser, mapper, event) -> {
+            List<Runnable> completions = new ArrayList<>(batch.size());
+            while ((event = parser.next()) != JsonParser.Event.END_OBJECT) {
+                if (!RESPONSES_FIELD.equals(JsonpUtils.expectKeyName(parser, event))) {
+                    JsonpUtils.skipValue(parser);
+                    continue;
+                }
+                JsonpUtils.expectNextEvent(parser, JsonParser.Event.START_ARRAY);
+                while ((event = parser.next()) != JsonParser.Event.END_ARRAY) {
+                    if (completions.size() < batch.size()) {
+                        JsonpUtils.expectEvent(parser, JsonParser.Event.START_OBJECT, event);
+                        completions.add(batch.get(completions.size()).read(parser, mapper));
+                    } else {
+                        JsonpUtils.skipValue(parser, event);
+                    }
+                }
+            }
+            return completions;
+        });
+    }
+
+    private static RequestItem toItem(SearchRequest request) {
+        return RequestItem.of(i -> i
+                .header(h -> {
+                    h.index(request.index())
+                            .allowNoIndices(request.allowNoIndices())
+                            .ignoreUnavailable(request.ignoreUnavailable())
+                            .preference(request.preference())
+                            .requestCache(request.requestCache())
+                            .routing(request.routing())
+                            .searchType(request.searchType());
+                    if (!request.expandWildcards().isEmpty()) {
+                        h.expandWildcards(request.expandWildcards());
+                    }
+                    return h;
+                })
+                .body(b -> {
+                    b.query(request.query())
+                            .from(request.from())
+                            .minScore(request.minScore())
+                            .postFilter(request.postFilter())
+                            .size(request.size())
+                            .trackScores(request.trackScores())
+                            .trackTotalHits(request.trackTotalHits())
+                            .suggest(request.suggest())
+                            .highlight(request.highlight())
+                            .source(request.source());
+                    if (!request.aggregations().isEmpty()) {
+                        b.aggregations(request.aggregations());
+                    }
+                    if (!request.searchAfter().isEmpty()) {
+                        b.searchAfter(request.searchAfter());
+                    }
+                    if (!request.sort().isEmpty()) {
+                        b.sort(request.sort());
+                    }
+                    if (!request.scriptFields().isEmpty()) {
+                        b.scriptFields(request.scriptFields());
+                    }
+                    return b;
+                }));
+    }
+
+    /**
+     * Sends queued searches and waits for the in-flight msearch requests
+     */
+    @Override
+    public void close() {
+        Map<String, List<Pending<?>>> remaining;
+        synchronized (this) {
+            closed = true;
+            remaining = new HashMap<>(batches);
+            batches.clear();
+        }
+        scheduler.shutdownNow();
+        remaining.forEach(this::send);
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | ExecutionException e) {
+            logger.warn("Coalesced searches did not complete before close", e);
+        }
+    }
+
+    /**
+     * Sends the multi search request of a commune
+     */
+    @FunctionalInterface
+    public interface Sender {
+        /**
+         * @param commune Commune of the searches
+         * @param request Multi search request, items target logical indexes
+         * @param endpoint Endpoint parsing the response into completions of the searches
+         * @return Future completed with the completions of the searches
+         */
+        CompletableFuture<List<Runnable>> send(String commune, MsearchRequest request,
+                                               Endpoint<MsearchRequest, List<Runnable>, ErrorResponse> endpoint);
+    }
+
+    private static final class Pending<ResponseT> {
+        final RequestItem item;
+        final JsonpDeserializer<ResponseT> deserializer;
+        final CompletableFuture<ResponseT> response = new CompletableFuture<>();
+
+        Pending(RequestItem item, JsonpDeserializer<ResponseT> deserializer) {
+            this.item = item;
+            this.deserializer = deserializer;
+        }
+
+        /**
+         * Reads the item of this search, the parser is at the start of the item
+         * @return Completes the caller with the item
+         */
+        Runnable read(JsonParser parser, JsonpMapper mapper) {
+            JsonParser itemParser;
+            boolean failure;
+            if (parser instanceof LookAheadJsonParser lookAhead) {
+                // Only the fields before the distinguishing one are buffered
+                Map.Entry<Boolean, JsonParser> variant = lookAhead.findVariant(ITEM_VARIANTS);
+                failure = Boolean.TRUE.equals(variant.getKey());
+                itemParser = variant.getValue();
+            } else {
+                JsonObject object = parser.getObject();
+                failure = object.containsKey("error");
+                itemParser = JsonpUtils.objectParser(object, mapper);
+            }
+            if (failure) {
+                OpenSearchException error = new OpenSearchException(ErrorResponse._DESERIALIZER.deserialize(itemParser, mapper));
+                return () -> response.completeExceptionally(error);
+            }
+            ResponseT result = deserializer.deserialize(itemParser, mapper);
+            return () -> response.complete(result);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.LogicalIndexNames;
+import com.omnia.sdk.OmniaSDK;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.CreateRequest;
+import org.opensearch.client.opensearch.core.DeleteByQueryRequest;
+import org.opensearch.client.opensearch.core.DeleteRequest;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.UpdateByQueryRequest;
+import org.opensearch.client.opensearch.core.UpdateRequest;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkOperationBase;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Per-logical-index rate limits, so that a noisy tenant cannot raise latency of every index
+ * sharing its commune. Every index has a read and a write token bucket refilled at the rate of
+ * its limit and holding up to burst seconds of tokens. Requests over the limit are rejected
+ * before they are sent with {@link TenantThrottledException}.
+ * <p>
+ * Default limits come from the config and are overridden by the config table: keys
+ * {@code rate_limit.read} and {@code rate_limit.write} replace the defaults,
+ * {@code rate_limit.read.<index>} and {@code rate_limit.write.<index>} set the limits of one index.
+ * A limit of 0 disables the bucket. The table is loaded once the limiter is started and reloaded periodically.
+ * <p>
+ * A bucket is stored as the time at which it is full again, taking a token moves that time
+ * one interval forward with a compare-and-set. Buckets live in striped maps of bounded size:
+ * a full bucket holds no state and is dropped when its stripe is over capacity.
+ */
+public class TenantRateLimiter implements AutoCloseable {
+    static final String KEY_PREFIX = "rate_limit.";
+    private static final String READ_KEY = KEY_PREFIX + "read";
+    private static final String WRITE_KEY = KEY_PREFIX + "write";
+    private static final int STRIPES = 64;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Set<Class<?>> WRITES = Set.of(IndexRequest.class, CreateRequest.class, UpdateRequest.class,
+            DeleteRequest.class, BulkRequest.class, DeleteByQueryRequest.class, UpdateByQueryRequest.class);
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantRateLimiter.class);
+
+    private final OmniaSDK sdk;
+    private final double defaultReadsPerSecond;
+    private final double defaultWritesPerSecond;
+    private final double burstSeconds;
+    private final int maxBucketsPerStripe;
+    private final long refreshSeconds;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ScheduledExecutorService scheduler;
+    private volatile Limits limits;
+
+    /**
+     * @param sdk SDK reading limits from the config table
+     * @param readsPerSecond Default read limit of an index, 0 is unlimited
+     * @param writesPerSecond Default write limit of an index, 0 is unlimited
+     * @param burstSeconds Seconds worth of requests an idle index may send at once
+     * @param maxTenants Maximum number of indexes with buckets kept in memory
+     * @param refreshSeconds How often limits are reloaded from the config table
+     */
+    public TenantRateLimiter(OmniaSDK sdk, double readsPerSecond, double writesPerSecond,
+                             double burstSeconds, int maxTenants, long refreshSeconds) {
+        if (readsPerSecond < 0 || writesPerSecond < 0 || burstSeconds <= 0 || maxTenants < STRIPES) {
+            throw new IllegalArgumentException("Rate limits must not be negative, burst must be positive and at least "
+                    + STRIPES + " tenants must be kept");
+        }
+        this.sdk = sdk;
+        this.defaultReadsPerSecond = readsPerSecond;
+        this.defaultWritesPerSecond = writesPerSecond;
+        this.burstSeconds = burstSeconds;
+        this.maxBucketsPerStripe = maxTenants / STRIPES;
+        this.refreshSeconds = refreshSeconds;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.limits = new Limits(readsPerSecond, writesPerSecond, Map.of(), Map.of());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "omnia-rate-limits");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts loading limits from the config table, default limits apply until they are loaded
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes a token of every logical index the request targets, or none of them
+     * @param request Request to send, writes use the write budget, everything else the read budget
+     * @param indexIds Logical indexes of the request URL
+     * @throws TenantThrottledException if an index has no tokens left, tokens taken from the other indexes are given back
+     */
+    public void acquire(Object request, Collection<String> indexIds) {
+        boolean write = isWrite(request);
+        long now = System.nanoTime();
+        Collection<String> targets = indexIds;
+        if (request instanceof BulkRequest bulk) {
+            targets = bulkIndexes(bulk, indexIds);
+        } else if (request instanceof MsearchRequest msearch) {
+            targets = msearchIndexes(msearch, indexIds);
+        }
+        Map<String, Long> taken = new HashMap<>();
+        for (String indexId : targets) {
+            long interval = take(indexId, write, now);
+            if (interval < 0) {
+                // A throttled request must not use up the budget of its other indexes
+                taken.forEach((taker, takenInterval) -> giveBack(taker, write, takenInterval));
+                throw new TenantThrottledException(indexId, write, limits.of(indexId, write));
+            }
+            if (interval > 0) {
+                taken.merge(indexId, interval, Long::sum);
+            }
+        }
+    }
+
+    static boolean isWrite(Object request) {
+        return WRITES.contains(request.getClass());
+    }
+
+    boolean tryAcquire(String indexId, boolean write, long now) {
+        return take(indexId, write, now) >= 0;
+    }
+
+    /**
+     * Takes a token of the index
+     * @return Interval the bucket was charged, 0 if the index is unlimited, -1 if it has no tokens left
+     */
+    private long take(String indexId, boolean write, long now) {
+        double requestsPerSecond = limits.of(indexId, write);
+        if (requestsPerSecond <= 0) {
+            return 0;
+        }
+        long interval = (long) (NANOS_PER_SECOND / requestsPerSecond);
+        // A bucket always holds at least one request
+        long burst = Math.max(interval, (long) (burstSeconds * NANOS_PER_SECOND));
+        Buckets buckets = buckets(indexId, now);
+        AtomicLongFieldUpdater<Buckets> bucket = write ? Buckets.WRITE : Buckets.READ;
+        while (true) {
+            long full = bucket.get(buckets);
+            long next = Math.max(full - now, 0) + interval;
+            if (next > burst) {
+                return -1;
+            }
+            if (bucket.compareAndSet(buckets, full, now + next)) {
+                return interval;
+            }
+        }
+    }
+
+    private void giveBack(String indexId, boolean write, long interval) {
+        Buckets buckets = buckets(indexId, System.nanoTime());
+        (write ? Buckets.WRITE : Buckets.READ).addAndGet(buckets, -interval);
+    }
+
+    /**
+     * Returns the number of indexes whose buckets are kept in memory
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    void refresh() {
+        try {
+            Map<String, String> values = sdk.loadConfigValues(KEY_PREFIX);
+            double read = defaultReadsPerSecond;
+            double write = defaultWritesPerSecond;
+            Map<String, Double> reads = new HashMap<>();
+            Map<String, Double> writes = new HashMap<>();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String key = entry.getKey();
+                double value;
+                try {
+                    value = Double.parseDouble(entry.getValue().trim());
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring rate limit {} with invalid value {}", key, entry.getValue());
+                    continue;
+                }
+                if (key.equals(READ_KEY)) {
+                    read = value;
+                } else if (key.equals(WRITE_KEY)) {
+                    write = value;
+                } else if (key.startsWith(READ_KEY + ".")) {
+                    reads.put(key.substring(READ_KEY.length() + 1), value);
+                } else if (key.startsWith(WRITE_KEY + ".")) {
+                    writes.put(key.substring(WRITE_KEY.length() + 1), value);
+                }
+            }
+            limits = new Limits(read, write, reads, writes);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to reload rate limits", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private Buckets buckets(String indexId, long now) {
+        int hash = indexId.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        Buckets buckets = stripe.buckets.get(indexId);
+        if (buckets == null) {
+            buckets = stripe.buckets.computeIfAbsent(indexId, ignored -> new Buckets(now));
+            if (stripe.buckets.size() > maxBucketsPerStripe) {
+                stripe.evict(now, maxBucketsPerStripe);
+            }
+        }
+        return buckets;
+    }
+
+    private static Collection<String> bulkIndexes(BulkRequest bulk, Collection<String> indexIds) {
+        Set<String> targets = new LinkedHashSet<>(indexIds);
+        for (BulkOperation operation : bulk.operations()) {
+            String indexId = ((BulkOperationBase) operation._get()).index();
+            if (indexId != null) {
+                targets.add(indexId);
+            }
+        }
+        return targets;
+    }
+
+    private static Collection<String> msearchIndexes(MsearchRequest msearch, Collection<String> indexIds) {
+        Set<String> targets = new LinkedHashSet<>(indexIds);
+        for (RequestItem item : msearch.searches()) {
+            for (String indexId : item.header().index()) {
+                // Patterns are not charged, their indexes are known only once expanded
+                if (!LogicalIndexNames.isPattern(indexId)) {
+                    targets.add(indexId);
+                }
+            }
+        }
+        return targets;
+    }
+
+    private record Limits(double read, double write, Map<String, Double> reads, Map<String, Double> writes) {
+        double of(String indexId, boolean isWrite) {
+            Double limit = (isWrite ? writes : reads).get(indexId);
+            return limit != null ? limit : (isWrite ? write : read);
+        }
+    }
+
+    private static final class Buckets {
+        static final AtomicLongFieldUpdater<Buckets> READ = AtomicLongFieldUpdater.newUpdater(Buckets.class, "readFull");
+        static final AtomicLongFieldUpdater<Buckets> WRITE = AtomicLongFieldUpdater.newUpdater(Buckets.class, "writeFull");
+
+        // Times the buckets are full again, a new bucket is full
+        volatile long readFull;
+        volatile long writeFull;
+
+        Buckets(long now) {
+            this.readFull = now;
+            this.writeFull = now;
+        }
+
+        boolean isFull(long now) {
+            return readFull - now <= 0 && writeFull - now <= 0;
+        }
+    }
+
+    private static final class Stripe {
+        final Map<String, Buckets> buckets = new ConcurrentHashMap<>();
+        final AtomicBoolean evicting = new AtomicBoolean();
+
+        /**
+         * Drops full buckets, then arbitrary ones until the stripe is a quarter below capacity.
+         * Dropping a bucket that is not full gives its index a fresh burst, which only happens
+         * when more indexes than the capacity are busy at once
+         */
+        void evict(long now, int capacity) {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int target = capacity - capacity / 4;
+                buckets.values().removeIf(bucket -> bucket.isFull(now));
+                Iterator<Buckets> iterator = buckets.values().iterator();
+                while (buckets.size() > target && iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
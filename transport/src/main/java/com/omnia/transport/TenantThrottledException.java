@@ -0,0 +1,38 @@
+package com.omnia.transport;
+
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+
+/**
+ * Request rejected by the transport because a logical index exceeded its rate limit.
+ * The request never reached the cluster, it is a 429 of type {@code omnia_rate_limit_exception}
+ * so that it can be told apart from the cluster's own rejections.
+ */
+public class TenantThrottledException extends OpenSearchException {
+    public static final String TYPE = "omnia_rate_limit_exception";
+    private static final long serialVersionUID = 1L;
+
+    private final String indexId;
+    private final boolean write;
+
+    public TenantThrottledException(String indexId, boolean write, double requestsPerSecond) {
+        super(ErrorResponse.of(r -> r
+                .status(429)
+                .error(e -> e.type(TYPE)
+                        .reason("index [" + indexId + "] exceeded its " + (write ? "write" : "read")
+                                + " rate limit of " + requestsPerSecond + " requests per second"))));
+        this.indexId = indexId;
+        this.write = write;
+    }
+
+    public String getIndexId() {
+        return indexId;
+    }
+
+    /**
+     * @return true if the write budget of the index is exhausted, false for the read budget
+     */
+    public boolean isWrite() {
+        return write;
+    }
+}
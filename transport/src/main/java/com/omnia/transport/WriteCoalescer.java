@@ -0,0 +1,344 @@
+package com.omnia.transport;
+
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpType;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.Result;
+import org.opensearch.client.opensearch._types.ShardStatistics;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.DeleteRequest;
+import org.opensearch.client.opensearch.core.DeleteResponse;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.IndexResponse;
+import org.opensearch.client.opensearch.core.UpdateRequest;
+import org.opensearch.client.opensearch.core.UpdateResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkOperationBase;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+
+/**
+ * Buffers single-document index, update and delete requests and sends them as one
+ * {@code _bulk} request per commune. A batch is sent when it reaches the operation
+ * or byte limit, or when the linger time since its first operation has passed.
+ * Every caller gets the response built from its own bulk item.
+ * <p>
+ * Document sizes are estimated without serializing them: maps, collections and scalars are
+ * walked, other documents count as {@value #OBJECT_DOCUMENT_BYTES} bytes.
+ */
+public class WriteCoalescer implements AutoCloseable {
+    private static final long DELETE_OPERATION_BYTES = 64;
+    static final long OBJECT_DOCUMENT_BYTES = 1024;
+    // Quotes, separators and digits of a scalar
+    private static final long SCALAR_BYTES = 8;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    // Values OpenSearch reports for writes that were not assigned a version or sequence number
+    private static final long NO_VERSION = -1;
+    private static final long UNASSIGNED_SEQ_NO = -2;
+    private static final long UNASSIGNED_PRIMARY_TERM = 0;
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    private final BiFunction<String, BulkRequest, CompletableFuture<BulkResponse>> sender;
+    private final int maxOperations;
+    private final long maxBytes;
+    private final long lingerMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Batch> batches = new HashMap<>();
+    private final Set<CompletableFuture<BulkResponse>> inFlight = ConcurrentHashMap.newKeySet();
+    private boolean closed;
+
+    /**
+     * @param sender Sends the bulk request of a commune, operations target logical indexes
+     * @param maxOperations Maximum number of operations in one bulk request
+     * @param maxBytes Maximum estimated size of documents in one bulk request
+     * @param lingerMillis How long the first operation of a batch waits for more operations
+     */
+    public WriteCoalescer(BiFunction<String, BulkRequest, CompletableFuture<BulkResponse>> sender,
+                          int maxOperations, long maxBytes, long lingerMillis) {
+        this.sender = sender;
+        this.maxOperations = maxOperations;
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "omnia-write-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Checks whether the request can be sent as a bulk operation. Requests with
+     * request-level parameters (refresh, timeout, wait_for_active_shards) cannot
+     * @param request Any request
+     * @return true for index, update and delete requests that can be coalesced
+     */
+    public static boolean isCoalescible(Object request) {
+        if (request instanceof IndexRequest<?> index) {
+            return index.refresh() == null && index.timeout() == null && index.waitForActiveShards() == null;
+        }
+        if (request instanceof UpdateRequest<?, ?> update) {
+            return update.refresh() == null && update.timeout() == null && update.waitForActiveShards() == null
+                    && update.source() == null && update.lang() == null;
+        }
+        if (request instanceof DeleteRequest delete) {
+            return delete.refresh() == null && delete.timeout() == null && delete.waitForActiveShards() == null;
+        }
+        return false;
+    }
+
+    /**
+     * Returns logical index of a coalescible request
+     * @param request Request accepted by {@link #isCoalescible}
+     * @return Logical index identifier
+     */
+    public static String indexOf(Object request) {
+        if (request instanceof IndexRequest<?> index) {
+            return index.index();
+        }
+        if (request instanceof UpdateRequest<?, ?> update) {
+            return update.index();
+        }
+        return ((DeleteRequest) request).index();
+    }
+
+    /**
+     * Queues the request into the batch of its commune
+     * @param commune Commune of the request index
+     * @param request Request accepted by {@link #isCoalescible}
+     * @return Future completed with {@link IndexResponse}, {@link UpdateResponse} or {@link DeleteResponse}
+     */
+    public CompletableFuture<Object> submit(String commune, Object request) {
+        Pending pending = toPending(request);
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Write coalescer is closed");
+            }
+            Batch batch = batches.get(commune);
+            if (batch == null) {
+                Batch created = new Batch();
+                batches.put(commune, created);
+                scheduler.schedule(() -> flushLingering(commune, created), lingerMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.pending.add(pending);
+            batch.bytes += pending.bytes;
+            if (batch.pending.size() >= maxOperations || batch.bytes >= maxBytes) {
+                batches.remove(commune);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(commune, full);
+        }
+        return pending.response;
+    }
+
+    private void flushLingering(String commune, Batch batch) {
+        synchronized (this) {
+            if (!batches.remove(commune, batch)) {
+                // Already sent because it filled up
+                return;
+            }
+        }
+        send(commune, batch);
+    }
+
+    private void send(String commune, Batch batch) {
+        List<BulkOperation> operations = new ArrayList<>(batch.pending.size());
+        for (Pending pending : batch.pending) {
+            operations.add(pending.operation);
+        }
+        CompletableFuture<BulkResponse> sent;
+        try {
+            sent = sender.apply(commune, BulkRequest.of(b -> b.operations(operations)));
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        inFlight.add(sent);
+        CompletableFuture<BulkResponse> request = sent;
+        sent.whenComplete((response, e) -> {
+            inFlight.remove(request);
+            if (e != null) {
+                logger.warn("Failed to send {} coalesced writes", batch.pending.size(), e);
+                batch.pending.forEach(pending -> pending.response.completeExceptionally(e));
+                return;
+            }
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < batch.pending.size(); i++) {
+                Pending pending = batch.pending.get(i);
+                try {
+                    pending.response.complete(toResponse(pending.operation, items.get(i)));
+                } catch (RuntimeException itemFailure) {
+                    pending.response.completeExceptionally(itemFailure);
+                }
+            }
+        });
+    }
+
+    private Pending toPending(Object request) {
+        if (request instanceof IndexRequest<?> index) {
+            Object document = index.document();
+            BulkOperation operation = index.opType() == OpType.Create
+                    ? BulkOperation.of(o -> o.create(c -> c
+                            .index(index.index()).id(index.id()).routing(index.routing())
+                            .ifSeqNo(index.ifSeqNo()).ifPrimaryTerm(index.ifPrimaryTerm())
+                            .version(index.version()).versionType(index.versionType())
+                            .pipeline(index.pipeline()).requireAlias(index.requireAlias())
+                            .document(document)))
+                    : BulkOperation.of(o -> o.index(i -> i
+                            .index(index.index()).id(index.id()).routing(index.routing())
+                            .ifSeqNo(index.ifSeqNo()).ifPrimaryTerm(index.ifPrimaryTerm())
+                            .version(index.version()).versionType(index.versionType())
+                            .pipeline(index.pipeline()).requireAlias(index.requireAlias())
+                            .document(document)));
+            return new Pending(operation, estimateBytes(document));
+        }
+        if (request instanceof UpdateRequest<?, ?> update) {
+            Object document = update.doc();
+            Object upsert = update.upsert();
+            BulkOperation operation = BulkOperation.of(o -> o.update(u -> u
+                    .index(update.index()).id(update.id()).routing(update.routing())
+                    .ifSeqNo(update.ifSeqNo()).ifPrimaryTerm(update.ifPrimaryTerm())
+                    .requireAlias(update.requireAlias()).retryOnConflict(update.retryOnConflict())
+                    .document(document).upsert(upsert).script(update.script())
+                    .docAsUpsert(update.docAsUpsert()).scriptedUpsert(update.scriptedUpsert())
+                    .detectNoop(update.detectNoop())));
+            return new Pending(operation, estimateBytes(document) + estimateBytes(upsert));
+        }
+        DeleteRequest delete = (DeleteRequest) request;
+        BulkOperation operation = BulkOperation.of(o -> o.delete(d -> d
+                .index(delete.index()).id(delete.id()).routing(delete.routing())
+                .ifSeqNo(delete.ifSeqNo()).ifPrimaryTerm(delete.ifPrimaryTerm())
+                .version(delete.version()).versionType(delete.versionType())));
+        return new Pending(operation, DELETE_OPERATION_BYTES);
+    }
+
+    private static long estimateBytes(Object document) {
+        return document == null ? 0 : estimateJsonBytes(document);
+    }
+
+    /**
+     * Estimates JSON size of a value, the estimate only decides when a batch is full
+     */
+    static long estimateJsonBytes(Object value) {
+        if (value instanceof CharSequence text) {
+            return text.length() + 2;
+        }
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            return SCALAR_BYTES;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long bytes = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += estimateJsonBytes(entry.getKey()) + estimateJsonBytes(entry.getValue()) + 2;
+            }
+            return bytes;
+        }
+        if (value instanceof Collection<?> collection) {
+            long bytes = 2;
+            for (Object element : collection) {
+                bytes += estimateJsonBytes(element) + 1;
+            }
+            return bytes;
+        }
+        return OBJECT_DOCUMENT_BYTES;
+    }
+
+    private static Object toResponse(BulkOperation operation, BulkResponseItem item) {
+        if (item.error() != null) {
+            throw new OpenSearchException(ErrorResponse.of(e -> e.error(item.error()).status(item.status())));
+        }
+        // Caller sees its logical index, not the commune the bulk item reports
+        WriteResult w = WriteResult.of(item, ((BulkOperationBase) operation._get()).index());
+        if (operation.isUpdate()) {
+            return UpdateResponse.of(b -> b.index(w.index).id(w.id).result(w.result).version(w.version)
+                    .seqNo(w.seqNo).primaryTerm(w.primaryTerm).shards(w.shards).forcedRefresh(w.forcedRefresh));
+        }
+        if (operation.isDelete()) {
+            return DeleteResponse.of(b -> b.index(w.index).id(w.id).result(w.result).version(w.version)
+                    .seqNo(w.seqNo).primaryTerm(w.primaryTerm).shards(w.shards).forcedRefresh(w.forcedRefresh));
+        }
+        return IndexResponse.of(b -> b.index(w.index).id(w.id).result(w.result).version(w.version)
+                .seqNo(w.seqNo).primaryTerm(w.primaryTerm).shards(w.shards).forcedRefresh(w.forcedRefresh));
+    }
+
+    private static Result toResult(String result) {
+        for (Result value : Result.values()) {
+            if (value.jsonValue().equals(result)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown bulk item result: " + result);
+    }
+
+    /**
+     * Sends buffered operations and waits for the in-flight bulk requests
+     */
+    @Override
+    public void close() {
+        Map<String, Batch> remaining;
+        synchronized (this) {
+            closed = true;
+            remaining = new HashMap<>(batches);
+            batches.clear();
+        }
+        scheduler.shutdownNow();
+        remaining.forEach(this::send);
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                    .get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException | ExecutionException e) {
+            logger.warn("Coalesced writes did not complete before close", e);
+        }
+    }
+
+    // Fields of a single-document write response, bulk items may omit the ones the response requires
+    private record WriteResult(String index, String id, Result result, long version, long seqNo, long primaryTerm,
+                               ShardStatistics shards, Boolean forcedRefresh) {
+        static WriteResult of(BulkResponseItem item, String index) {
+            return new WriteResult(index, item.id(), toResult(item.result()),
+                    item.version() != null ? item.version() : NO_VERSION,
+                    item.seqNo() != null ? item.seqNo() : UNASSIGNED_SEQ_NO,
+                    item.primaryTerm() != null ? item.primaryTerm() : UNASSIGNED_PRIMARY_TERM,
+                    item.shards() != null ? item.shards() : ShardStatistics.of(s -> s.total(0).successful(0).failed(0)),
+                    item.forcedRefresh());
+        }
+    }
+
+    private static final class Batch {
+        final List<Pending> pending = new ArrayList<>();
+        long bytes;
+    }
+
+    private static final class Pending {
+        final BulkOperation operation;
+        final long bytes;
+        final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        Pending(BulkOperation operation, long bytes) {
+            this.operation = operation;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.omnia.transport;
+
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControllerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    void testRequestsOverLimitAreQueuedThenRejected() {
+        AdmissionController admission = new AdmissionController(2, 1, 10, 1, 1000, 0.5);
+
+        assertTrue(admission.acquire("commune_1").isDone());
+        assertTrue(admission.acquire("commune_1").isDone());
+        CompletableFuture<Void> queued = admission.acquire("commune_1");
+        CompletableFuture<Void> rejected = admission.acquire("commune_1");
+
+        assertFalse(queued.isDone());
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        OpenSearchException cause = assertInstanceOf(OpenSearchException.class, e.getCause());
+        assertEquals(429, cause.status());
+        assertEquals(new AdmissionController.CommuneStats(2, 2, 1, 1), admission.stats().get("commune_1"));
+
+        admission.release("commune_1", FAST, false);
+        assertTrue(queued.isDone(), "Released slot should go to the queued request");
+        assertEquals(new AdmissionController.CommuneStats(2, 2, 0, 1), admission.stats().get("commune_1"));
+    }
+
+    @Test
+    void testCommunesAreLimitedSeparately() {
+        AdmissionController admission = new AdmissionController(1, 1, 10, 0, 1000, 0.5);
+
+        assertTrue(admission.acquire("commune_1").isDone());
+        assertTrue(admission.acquire("commune_2").isDone());
+        assertTrue(admission.acquire("commune_1").isCompletedExceptionally());
+    }
+
+    @Test
+    void testLimitGrowsAdditivelyAndShrinksMultiplicatively() {
+        AdmissionController admission = new AdmissionController(4, 1, 10, 0, 1000, 0.5);
+
+        // About a window of fast responses adds one slot
+        for (int i = 0; i < 5; i++) {
+            admission.acquire("commune_1").join();
+            admission.release("commune_1", FAST, false);
+        }
+        assertEquals(5, admission.stats().get("commune_1").limit());
+
+        admission.acquire("commune_1").join();
+        admission.release("commune_1", FAST, true);
+        assertEquals(2, admission.stats().get("commune_1").limit(), "429 should halve the limit");
+
+        for (int i = 0; i < 3; i++) {
+            admission.acquire("commune_1").join();
+            admission.release("commune_1", SLOW, false);
+        }
+        assertEquals(1, admission.stats().get("commune_1").limit(), "Limit should not drop below the minimum");
+    }
+}
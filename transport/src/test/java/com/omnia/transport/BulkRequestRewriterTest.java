@@ -0,0 +1,110 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.NdJsonpSerializable;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.core.BulkRequest;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkRequestRewriterTest {
+    private final StubOmniaSDK sdk = new StubOmniaSDK(indexId -> "commune_" + indexId);
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+
+    @Test
+    void testOperationsAreRoutedAndEnriched() {
+        BulkRequest request = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("123").id("1").document(Map.of("title", "first"))))
+                .operations(o -> o.create(c -> c.index("456").id("2").document(Map.of("title", "second", "real_index", "456"))))
+                .operations(o -> o.index(i -> i.index("123").id("3").document(Map.of("title", "third"))))
+                .operations(o -> o.delete(d -> d.index("456").id("4"))));
+
+        BulkRequest rewritten = new BulkRequestRewriter().rewrite(request, sdk, Map.of("123", "commune_123", "456", "commune_456"));
+        List<String> lines = toNdJson(rewritten);
+
+        assertEquals(List.of("123", "456"), List.copyOf(BulkRequestRewriter.operationIndexes(request)));
+        assertTrue(sdk.resolved().isEmpty(), "Rewriter should not resolve indexes");
+        assertEquals(7, lines.size());
+        assertEquals("{\"index\":{\"_id\":\"1\",\"_index\":\"commune_123\"}}", lines.get(0));
+        assertEquals("{\"title\":\"first\",\"real_index\":\"123\"}", lines.get(1));
+        assertTrue(lines.get(2).contains("\"_index\":\"commune_456\""));
+        assertEquals(1, lines.get(3).split("real_index").length - 1, "Existing feature field must not be duplicated");
+        assertEquals("{\"delete\":{\"_id\":\"4\",\"_index\":\"commune_456\"}}", lines.get(6));
+    }
+
+    @Test
+    void testUpdateAndUrlIndex() {
+        BulkRequest request = BulkRequest.of(b -> b
+                .index("123")
+                .operations(o -> o.update(u -> u.id("1").document(Map.of("title", "new")).upsert(Map.of("title", "old")))));
+
+        BulkRequest rewritten = new BulkRequestRewriter().rewrite(request, sdk, Map.of("123", "commune_123"));
+        List<String> lines = toNdJson(rewritten);
+
+        assertTrue(sdk.resolved().isEmpty());
+        assertEquals("{\"update\":{\"_id\":\"1\"}}", lines.get(0));
+        assertEquals("{\"doc\":{\"title\":\"new\",\"real_index\":\"123\"},\"upsert\":{\"title\":\"old\",\"real_index\":\"123\"}}",
+                lines.get(1));
+        assertEquals("123", rewritten.index());
+    }
+
+    @Test
+    void testFeatureFieldIsOverridden() {
+        BulkRequest request = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("123").document(Map.of("real_index", "456")))));
+
+        List<String> lines = toNdJson(new BulkRequestRewriter().rewrite(request, sdk, Map.of("123", "commune_123")));
+        assertEquals("{\"real_index\":\"123\"}", lines.get(1));
+    }
+
+    @Test
+    void testUnresolvedOperationIndexIsRejected() {
+        BulkRequest request = BulkRequest.of(b -> b
+                .operations(o -> o.delete(d -> d.index("456").id("1"))));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BulkRequestRewriter().rewrite(request, sdk, Map.of("123", "commune_123")));
+        assertTrue(sdk.resolved().isEmpty());
+    }
+
+    @Test
+    void testTenantRoutingIsAdded() {
+        OmniaSDK routingSdk = new StubOmniaSDK(indexId -> "commune_" + indexId).routing(indexId -> indexId);
+        BulkRequest request = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("123").id("1").document(Map.of("title", "first"))))
+                .operations(o -> o.delete(d -> d.index("456").id("2").routing("custom"))));
+
+        List<String> lines = toNdJson(new BulkRequestRewriter().rewrite(request, routingSdk,
+                Map.of("123", "commune_123", "456", "commune_456")));
+        assertEquals("{\"index\":{\"_id\":\"1\",\"_index\":\"commune_123\",\"routing\":\"123\"}}", lines.get(0));
+        assertEquals("{\"delete\":{\"_id\":\"2\",\"_index\":\"commune_456\",\"routing\":\"custom\"}}", lines.get(2));
+    }
+
+    // Writes the request the way RestClientTransport does
+    private List<String> toNdJson(NdJsonpSerializable value) {
+        List<String> lines = new ArrayList<>();
+        Iterator<?> values = value._serializables();
+        while (values.hasNext()) {
+            Object item = values.next();
+            if (item instanceof NdJsonpSerializable serializable && item != value) {
+                lines.addAll(toNdJson(serializable));
+            } else {
+                StringWriter writer = new StringWriter();
+                JsonGenerator generator = mapper.jsonProvider().createGenerator(writer);
+                mapper.serialize(item, generator);
+                generator.close();
+                lines.add(writer.toString());
+            }
+        }
+        return lines;
+    }
+}
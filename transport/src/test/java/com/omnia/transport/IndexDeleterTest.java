@@ -0,0 +1,231 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import com.omnia.sdk.PendingDeletion;
+import jakarta.json.stream.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch._types.Conflicts;
+import org.opensearch.client.opensearch.core.DeleteByQueryRequest;
+import org.opensearch.client.opensearch.core.DeleteByQueryResponse;
+import org.opensearch.client.opensearch.tasks.GetTasksRequest;
+import org.opensearch.client.opensearch.tasks.GetTasksResponse;
+import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.Transport;
+import org.opensearch.client.transport.TransportOptions;
+
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexDeleterTest {
+    private static final String TASK = """
+            {"completed": %s,
+             "task": {"node": "n1", "id": 1, "type": "transport", "action": "indices:data/write/delete/byquery",
+                      "start_time_in_millis": 0, "running_time_in_nanos": 0, "cancellable": true, "headers": {}},
+             "response": {"batches": 1, "created": 0, "deleted": 2, "noops": 0, "failures": %s,
+                          "requests_per_second": 500, "retries": {"bulk": 0, "search": 0}, "throttled_millis": 0,
+                          "throttled_until_millis": 0, "total": 2, "updated": 0, "version_conflicts": 0}}
+            """;
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final Map<String, String> taskIds = new ConcurrentHashMap<>();
+    private final List<String> completed = new CopyOnWriteArrayList<>();
+    // Unfinished tombstones of the mapping store, all leased to the deleter under test
+    private final Map<String, PendingDeletion> tombstones = new ConcurrentHashMap<>();
+    private final AtomicInteger claims = new AtomicInteger();
+
+    private final OmniaSDK sdk = new StubOmniaSDK(indexId -> "commune_1") {
+        @Override
+        public CompletionStage<Map<String, String>> tombstoneIndexesAsync(Collection<String> indexIds) {
+            Map<String, String> deleted = new LinkedHashMap<>();
+            indexIds.stream().filter(indexId -> !indexId.equals("missing")).forEach(indexId -> deleted.put(indexId, "commune_1"));
+            deleted.forEach((indexId, commune) -> tombstones.put(indexId, new PendingDeletion(indexId, commune, null)));
+            return CompletableFuture.completedFuture(deleted);
+        }
+
+        @Override
+        public boolean storesDeletions() {
+            return true;
+        }
+
+        @Override
+        public List<PendingDeletion> claimDeletions(String owner, Duration lease) {
+            claims.incrementAndGet();
+            return List.copyOf(tombstones.values());
+        }
+
+        @Override
+        public void recordDeletionTask(String indexId, String taskId) {
+            taskIds.put(indexId, taskId);
+            tombstones.computeIfPresent(indexId, (id, tombstone) -> new PendingDeletion(id, tombstone.commune(), taskId));
+        }
+
+        @Override
+        public void completeIndexDeletion(String indexId) {
+            completed.add(indexId);
+            tombstones.remove(indexId);
+        }
+    };
+
+    private final List<Object> requests = new CopyOnWriteArrayList<>();
+    private String taskState = TASK.formatted(false, "[]");
+
+    private final Transport transport = new Transport() {
+        @Override
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            requests.add(request);
+            Object response;
+            if (request instanceof DeleteByQueryRequest) {
+                response = DeleteByQueryResponse.of(b -> b.task("n1:" + requests.size()));
+            } else {
+                JsonParser parser = mapper.jsonProvider().createParser(new StringReader(taskState));
+                response = GetTasksResponse._DESERIALIZER.deserialize(parser, mapper);
+            }
+            return CompletableFuture.completedFuture((ResponseT) response);
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return mapper;
+        }
+
+        @Override
+        public TransportOptions options() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final IndexDeleter deleter = new IndexDeleter(transport, sdk, 100, 2, 3600);
+
+    @BeforeEach
+    void setUp() {
+        // The first poll runs right after start, the next one is an hour later
+        await(() -> claims.get() > 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deleter.close();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not reached in time");
+            Thread.onSpinWait();
+        }
+    }
+
+    @Test
+    void testDeletionStartsThrottledTask() {
+        Map<String, String> deleted = deleter.deleteIndexes(List.of("123", "missing")).join();
+
+        assertEquals(Map.of("123", "commune_1"), deleted);
+        assertEquals(1, requests.size());
+        DeleteByQueryRequest request = assertInstanceOf(DeleteByQueryRequest.class, requests.get(0));
+        assertEquals(List.of("commune_1"), request.index());
+        assertEquals("123", request.query().term().value().stringValue());
+        assertEquals(Conflicts.Proceed, request.conflicts());
+        assertEquals(Boolean.FALSE, request.waitForCompletion());
+        assertEquals(100L, request.requestsPerSecond());
+        assertEquals(2L, request.slices());
+        assertNull(request.routing());
+        await(() -> taskIds.containsKey("123"));
+        assertEquals(Map.of("123", "n1:1"), taskIds);
+        assertEquals(Set.of("123"), deleter.pendingDeletions());
+    }
+
+    @Test
+    void testDeletionsAreTrackedWithoutStore() {
+        OmniaSDK unstored = new StubOmniaSDK(indexId -> "commune_1") {
+            @Override
+            public CompletionStage<Map<String, String>> tombstoneIndexesAsync(Collection<String> indexIds) {
+                return CompletableFuture.completedFuture(Map.of("123", "commune_1"));
+            }
+        };
+        try (IndexDeleter local = new IndexDeleter(transport, unstored, 100, 2, 3600)) {
+            local.deleteIndexes(List.of("123")).join();
+            local.poll();
+
+            assertEquals(Set.of("123"), local.pendingDeletions(), "Deletions started here should be kept");
+            assertInstanceOf(DeleteByQueryRequest.class, requests.get(0));
+        }
+    }
+
+    @Test
+    void testCompletedTaskClearsTombstone() {
+        deleter.deleteIndexes(List.of("123")).join();
+
+        deleter.poll();
+        assertTrue(completed.isEmpty(), "Running task should not complete the deletion");
+
+        taskState = TASK.formatted(true, "[]");
+        deleter.poll();
+
+        assertEquals(List.of("123"), completed);
+        assertTrue(deleter.pendingDeletions().isEmpty());
+        GetTasksRequest get = assertInstanceOf(GetTasksRequest.class, requests.get(2));
+        assertEquals("n1:1", get.taskId());
+    }
+
+    @Test
+    void testFailedTaskIsRestarted() {
+        deleter.deleteIndexes(List.of("123")).join();
+
+        taskState = TASK.formatted(true, "[\"shard failure\"]");
+        deleter.poll();
+
+        assertTrue(completed.isEmpty());
+        assertInstanceOf(DeleteByQueryRequest.class, requests.get(2));
+        await(() -> "n1:3".equals(taskIds.get("123")));
+        assertEquals(Set.of("123"), deleter.pendingDeletions());
+    }
+
+    @Test
+    void testUnfinishedDeletionsAreResumed() {
+        // Left by an instance that stopped: one task was recorded, the other was never started
+        tombstones.put("123", new PendingDeletion("123", "commune_1", "n1:7"));
+        tombstones.put("456", new PendingDeletion("456", "commune_2", null));
+
+        deleter.poll();
+
+        assertEquals(Set.of("123", "456"), deleter.pendingDeletions());
+        assertEquals(2, requests.size());
+        assertTrue(requests.stream().anyMatch(r -> r instanceof GetTasksRequest get && get.taskId().equals("n1:7")),
+                "Recorded task should be checked, not restarted");
+        DeleteByQueryRequest restarted = (DeleteByQueryRequest) requests.stream()
+                .filter(DeleteByQueryRequest.class::isInstance).findFirst().orElseThrow();
+        assertEquals(List.of("commune_2"), restarted.index());
+
+        // Lease went to another instance
+        tombstones.clear();
+        deleter.poll();
+        assertTrue(deleter.pendingDeletions().isEmpty());
+    }
+}
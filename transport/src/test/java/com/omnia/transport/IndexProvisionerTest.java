@@ -0,0 +1,143 @@
+package com.omnia.transport;
+
+import com.omnia.common.config.Config;
+import com.omnia.sdk.OmniaSDK;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.mapping.TypeMapping;
+import org.opensearch.client.opensearch.indices.CreateIndexRequest;
+import org.opensearch.client.opensearch.indices.CreateIndexResponse;
+import org.opensearch.client.opensearch.indices.GetMappingRequest;
+import org.opensearch.client.opensearch.indices.GetMappingResponse;
+import org.opensearch.client.opensearch.indices.PutMappingRequest;
+import org.opensearch.client.opensearch.indices.PutMappingResponse;
+import org.opensearch.client.opensearch.indices.get_mapping.IndexMappingRecord;
+import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.Transport;
+import org.opensearch.client.transport.TransportOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexProvisionerTest {
+    private final OmniaSDK sdk = StubOmniaSDK.commune("commune_1");
+
+    private final List<Object> requests = new ArrayList<>();
+    private boolean communeExists = true;
+
+    private final Transport transport = new Transport() {
+        @Override
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            requests.add(request);
+            Object response;
+            if (request instanceof GetMappingRequest) {
+                if (!communeExists) {
+                    return CompletableFuture.failedFuture(new OpenSearchException(ErrorResponse.of(e -> e.status(404)
+                            .error(c -> c.type("index_not_found_exception").reason("no such index")))));
+                }
+                response = GetMappingResponse.of(b -> b.putResult("commune_1", IndexMappingRecord.of(r -> r.mappings(m -> m
+                        .properties("real_index", p -> p.keyword(k -> k))
+                        .properties("title", p -> p.text(t -> t))))));
+            } else if (request instanceof PutMappingRequest) {
+                response = PutMappingResponse.of(b -> b.acknowledged(true));
+            } else {
+                communeExists = true;
+                response = CreateIndexResponse.of(b -> b.index("commune_1").acknowledged(true).shardsAcknowledged(true));
+            }
+            return CompletableFuture.completedFuture((ResponseT) response);
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return new JacksonJsonpMapper();
+        }
+
+        @Override
+        public TransportOptions options() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final IndexProvisioner provisioner = new IndexProvisioner(transport, sdk, new Config());
+
+    @Test
+    void testKnownFieldsDoNotReachCluster() {
+        TypeMapping mappings = TypeMapping.of(m -> m.properties("title", p -> p.text(t -> t)));
+
+        Map<String, String> communes = provisioner.createIndexes(List.of("123", "456"), mappings).join();
+        provisioner.createIndexes(List.of("789"), mappings).join();
+
+        assertEquals(Map.of("123", "commune_1", "456", "commune_1"), communes);
+        assertEquals(1, requests.size(), "Only the first creation should load commune fields");
+        assertInstanceOf(GetMappingRequest.class, requests.get(0));
+    }
+
+    @Test
+    void testNewFieldsAreMergedOnce() {
+        TypeMapping mappings = TypeMapping.of(m -> m
+                .properties("title", p -> p.text(t -> t))
+                .properties("author", p -> p.object(o -> o.properties("name", n -> n.keyword(k -> k)))));
+
+        provisioner.createIndexes(List.of("123"), mappings).join();
+        provisioner.createIndexes(List.of("456"), mappings).join();
+
+        assertEquals(2, requests.size());
+        PutMappingRequest put = assertInstanceOf(PutMappingRequest.class, requests.get(1));
+        assertEquals(List.of("commune_1"), put.index());
+        assertEquals(Set.of("title", "author"), put.properties().keySet());
+    }
+
+    @Test
+    void testMissingCommuneIsCreated() {
+        communeExists = false;
+        TypeMapping mappings = TypeMapping.of(m -> m.properties("title", p -> p.text(t -> t)));
+
+        provisioner.createIndexes(List.of("123"), mappings).join();
+        provisioner.createIndexes(List.of("456"), mappings).join();
+
+        assertEquals(2, requests.size());
+        CreateIndexRequest create = assertInstanceOf(CreateIndexRequest.class, requests.get(1));
+        assertEquals("commune_1", create.index());
+        assertEquals(Set.of("title", "real_index", "omnia_id"), create.mappings().properties().keySet());
+        assertTrue(create.mappings().properties().get("omnia_id").isKeyword(), "Tenant filter needs a keyword field");
+        assertEquals(List.of("omnia_id"), create.settings().sort().field(), "Commune template should be applied");
+    }
+
+    @Test
+    void testTenantFieldsCannotBeRemapped() {
+        communeExists = false;
+        TypeMapping mappings = TypeMapping.of(m -> m.properties("real_index", p -> p.text(t -> t)));
+
+        provisioner.createIndexes(List.of("123"), mappings).join();
+
+        CreateIndexRequest create = assertInstanceOf(CreateIndexRequest.class, requests.get(1));
+        assertTrue(create.mappings().properties().get("real_index").isKeyword());
+    }
+
+    @Test
+    void testFieldPathsIncludeObjectFields() {
+        TypeMapping mappings = TypeMapping.of(m -> m
+                .properties("author", p -> p.object(o -> o.properties("name", n -> n.keyword(k -> k))))
+                .properties("tags", p -> p.nested(n -> n.properties("value", v -> v.keyword(k -> k)))));
+
+        assertEquals(Set.of("author", "author.name", "tags", "tags.value"), IndexProvisioner.fieldPaths(mappings.properties()));
+    }
+}
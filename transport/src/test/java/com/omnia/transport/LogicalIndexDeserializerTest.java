@@ -0,0 +1,179 @@
+package com.omnia.transport;
+
+import jakarta.json.stream.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.GetResponse;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.search.Hit;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogicalIndexDeserializerTest {
+    private static final String SEARCH = """
+            {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+             "hits": {"total": {"value": 1, "relation": "eq"}, "max_score": 1.0, "hits": [
+               {"_index": "commune_1", "_id": "1", "_score": 1.0,
+                "_source": {"real_index": "123", "_index": "commune_1"}}]}}
+            """;
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+
+    private <T> T parse(String json, JsonpDeserializer<T> deserializer) {
+        JsonParser parser = mapper.jsonProvider().createParser(new StringReader(json));
+        return deserializer.deserialize(parser, mapper);
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testHitIndexIsRenamed() {
+        JsonpDeserializer<SearchResponse<Map>> deserializer = LogicalIndexDeserializer.of(
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class)), Map.of("123", "commune_1"));
+
+        SearchResponse<Map> response = parse(SEARCH, deserializer);
+
+        assertEquals("123", response.hits().hits().get(0).index());
+        assertEquals("commune_1", response.hits().hits().get(0).source().get("_index"), "Documents should not be changed");
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testSharedCommuneIsNotRenamed() {
+        JsonpDeserializer<SearchResponse<Map>> original = SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class));
+        JsonpDeserializer<SearchResponse<Map>> deserializer = LogicalIndexDeserializer.of(original,
+                Map.of("123", "commune_1", "456", "commune_1"));
+
+        assertSame(original, deserializer);
+        assertEquals("commune_1", parse(SEARCH, deserializer).hits().hits().get(0).index());
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testGetIndexIsRenamed() {
+        JsonpDeserializer<GetResponse<Map>> deserializer = LogicalIndexDeserializer.of(
+                GetResponse.createGetResponseDeserializer(JsonpDeserializer.of(Map.class)), Map.of("123", "commune_1"));
+
+        GetResponse<Map> response = parse("""
+                {"_index": "commune_1", "_id": "1", "_version": 1, "_seq_no": 0, "_primary_term": 1,
+                 "found": true, "_source": {"real_index": "123"}}
+                """, deserializer);
+
+        assertEquals("123", response.index());
+        assertEquals("123", response.source().get("real_index"));
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testSharedCommuneHitsAreRenamedFromSource() {
+        JsonpDeserializer<SearchResponse<Map>> deserializer = LogicalIndexDeserializer.of(
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class)),
+                Map.of("123", "commune_1", "456", "commune_1"), List.of(), "real_index");
+
+        SearchResponse<Map> response = parse("""
+                {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+                 "hits": {"total": {"value": 3, "relation": "eq"}, "max_score": 1.0, "hits": [
+                   {"_index": "commune_1", "_id": "1", "_score": 1.0, "_source": {"real_index": "123", "price": 3}},
+                   {"_index": "commune_1", "_id": "2", "_score": 0.5, "_source": {"title": "a", "real_index": "456"}},
+                   {"_index": "commune_1", "_id": "3", "_score": 0.5, "_source": {"real_index": "789"}},
+                   {"_index": "commune_1", "_id": "4", "_score": 0.5}]},
+                 "aggregations": {}}
+                """, deserializer);
+
+        List<Hit<Map>> hits = response.hits().hits();
+        assertEquals("123", hits.get(0).index());
+        assertEquals(3, hits.get(0).source().get("price"));
+        assertEquals("456", hits.get(1).index());
+        assertEquals("a", hits.get(1).source().get("title"));
+        assertEquals("commune_1", hits.get(2).index(), "Indexes outside the request should not be reported");
+        assertEquals("commune_1", hits.get(3).index(), "Hits without source keep the commune");
+        assertEquals(3, response.hits().total().value());
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testSharedCommuneHitsAreRenamedFromFields() {
+        JsonpDeserializer<SearchResponse<Map>> deserializer = LogicalIndexDeserializer.of(
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Map.class)),
+                Map.of("123", "commune_1", "456", "commune_1"), List.of(), "real_index");
+
+        SearchResponse<Map> response = parse("""
+                {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+                 "hits": {"total": {"value": 2, "relation": "eq"}, "max_score": 1.0, "hits": [
+                   {"_index": "commune_1", "_id": "1", "_score": 1.0, "fields": {"real_index": ["456"], "tags": ["a", "b"]},
+                    "sort": [3]},
+                   {"_index": "commune_1", "_id": "2", "_score": 0.5, "fields": {"real_index": ["123"]}}]}}
+                """, deserializer);
+
+        List<Hit<Map>> hits = response.hits().hits();
+        assertEquals("456", hits.get(0).index());
+        assertEquals(2, hits.get(0).fields().get("tags").to(List.class).size());
+        assertEquals(List.of("3"), hits.get(0).sort());
+        assertEquals("123", hits.get(1).index());
+    }
+
+    @Test
+    void testSkippedHitsContinueAfterReadAhead() {
+        // Jackson skips the source of documents read as Void
+        JsonpDeserializer<SearchResponse<Void>> deserializer = LogicalIndexDeserializer.of(
+                SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Void.class)),
+                Map.of("123", "commune_1", "456", "commune_1"), List.of(), "real_index");
+
+        SearchResponse<Void> response = parse("""
+                {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+                 "hits": {"total": {"value": 2, "relation": "eq"}, "max_score": 1.0, "hits": [
+                   {"_index": "commune_1", "_id": "1", "_score": 1.0,
+                    "_source": {"real_index": "123", "nested": {"values": [1, 2]}}, "sort": [3]},
+                   {"_index": "commune_1", "_id": "2", "_score": 0.5, "_source": {"real_index": "456"}}]}}
+                """, deserializer);
+
+        List<Hit<Void>> hits = response.hits().hits();
+        assertEquals("123", hits.get(0).index());
+        assertEquals(List.of("3"), hits.get(0).sort());
+        assertEquals("456", hits.get(1).index());
+        assertEquals("2", hits.get(1).id());
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    void testMsearchItemsAreRenamedWithTheirCommunes() {
+        JsonpDeserializer<MsearchResponse<Map>> deserializer = LogicalIndexDeserializer.of(
+                MsearchResponse.createMsearchResponseDeserializer(JsonpDeserializer.of(Map.class)), Map.of(),
+                List.of(Map.of("123", "commune_1"), Map.of("456", "commune_1", "789", "commune_1")), "real_index");
+
+        MsearchResponse<Map> response = parse("""
+                {"took": 1, "responses": [
+                  {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+                   "hits": {"total": {"value": 1, "relation": "eq"}, "max_score": 1.0, "hits": [
+                     {"_index": "commune_1", "_id": "1", "_score": 1.0, "_source": {"real_index": "123"}}]}, "status": 200},
+                  {"took": 1, "timed_out": false, "_shards": {"total": 1, "successful": 1, "skipped": 0, "failed": 0},
+                   "hits": {"total": {"value": 1, "relation": "eq"}, "max_score": 1.0, "hits": [
+                     {"_index": "commune_1", "_id": "2", "_score": 1.0, "_source": {"real_index": "789"}}]}, "status": 200}]}
+                """, deserializer);
+
+        assertEquals("123", response.responses().get(0).result().hits().hits().get(0).index());
+        assertEquals("789", response.responses().get(1).result().hits().hits().get(0).index());
+    }
+
+    @Test
+    void testBulkItemsAreRenamedByPosition() {
+        JsonpDeserializer<BulkResponse> deserializer = LogicalIndexDeserializer.of(BulkResponse._DESERIALIZER, Map.of(),
+                List.of(Map.of("123", "commune_1"), Map.of("456", "commune_1")), "real_index");
+
+        BulkResponse response = parse("""
+                {"took": 1, "errors": false, "items": [
+                  {"index": {"_index": "commune_1", "_id": "1", "status": 201, "result": "created"}},
+                  {"delete": {"_index": "commune_1", "_id": "2", "status": 200, "result": "deleted"}}]}
+                """, deserializer);
+
+        assertEquals("123", response.items().get(0).index());
+        assertEquals("456", response.items().get(1).index());
+    }
+}
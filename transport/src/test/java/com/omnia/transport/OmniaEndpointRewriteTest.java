@@ -0,0 +1,148 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.GetRequest;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.opensearch.indices.RefreshRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OmniaEndpointRewriteTest {
+    private final OmniaSDK sdk = new StubOmniaSDK(indexId -> indexId.equals("unknown") ? null : "commune_" + indexId.charAt(0))
+            .patterns(pattern -> pattern.equals("1*") ? List.of("123", "145") : List.of());
+
+    @Test
+    void testSingleIndexIsReplaced() {
+        GetRequest request = GetRequest.of(g -> g.index("123").id("doc/1"));
+        OmniaEndpoint<GetRequest, ?, ?> endpoint = new OmniaEndpoint<>(GetRequest._ENDPOINT, sdk);
+
+        assertEquals("/commune_1/_doc/doc%2F1", endpoint.requestUrl(request));
+        assertSame(endpoint.requestUrl(request), endpoint.requestUrl(request), "Rewritten path should be built once");
+    }
+
+    @Test
+    void testSeveralIndexesAreReplaced() {
+        SearchRequest request = SearchRequest.of(s -> s.index("123", "unknown", "456"));
+        OmniaEndpoint<SearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk);
+
+        assertEquals(List.of("123", "unknown", "456"), endpoint.getIndex("/123,unknown,456/_search"));
+        assertEquals(List.of("123", "456"), endpoint.getIndex("/123%2C456/_search"));
+        assertEquals("/commune_1,unknown,commune_4/_search", endpoint.requestUrl(request));
+    }
+
+    @Test
+    void testPathWithoutIndexIsKept() {
+        RefreshRequest request = RefreshRequest.of(r -> r);
+        OmniaEndpoint<RefreshRequest, ?, ?> endpoint = new OmniaEndpoint<>(RefreshRequest._ENDPOINT, sdk);
+
+        assertEquals(List.of(), endpoint.getIndex("/_refresh"));
+        assertEquals("/_refresh", endpoint.requestUrl(request));
+        assertEquals(Map.of(), endpoint.resolveIndexes(request));
+    }
+
+    @Test
+    void testPatternIsExpanded() {
+        SearchRequest request = SearchRequest.of(s -> s.index("1*", "456"));
+        OmniaEndpoint<SearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk);
+
+        assertEquals(List.of("123", "145", "456"), List.copyOf(endpoint.resolveIndexes(request).keySet()));
+        assertEquals("/commune_1,commune_4/_search", endpoint.requestUrl(request));
+    }
+
+    @Test
+    void testPatternIsExpandedAsync() {
+        SearchRequest request = SearchRequest.of(s -> s.index("1*", "456"));
+        OmniaEndpoint<SearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk);
+
+        assertEquals(List.of("123", "145", "456"), List.copyOf(endpoint.resolveIndexesAsync(request).toCompletableFuture().join().keySet()));
+
+        SearchRequest unmatched = SearchRequest.of(s -> s.index("9*"));
+        CompletionException e = assertThrows(CompletionException.class, () -> new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk)
+                .resolveIndexesAsync(unmatched).toCompletableFuture().join());
+        assertEquals(404, ((OpenSearchException) e.getCause()).status());
+    }
+
+    @Test
+    void testBulkOperationsAreResolvedBeforeRewrite() {
+        StubOmniaSDK stub = new StubOmniaSDK(indexId -> "commune_" + indexId.charAt(0));
+        BulkRequest request = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("123").id("1").document(Map.of("title", "first"))))
+                .operations(o -> o.delete(d -> d.index("456").id("2")))
+                .operations(o -> o.delete(d -> d.index("123").id("3"))));
+        OmniaEndpoint<BulkRequest, ?, ?> endpoint = new OmniaEndpoint<>(BulkRequest._ENDPOINT, stub);
+
+        assertEquals(Map.of(), endpoint.resolveIndexesAsync(request).toCompletableFuture().join());
+        assertEquals(List.of(List.of("123", "456")), stub.resolved(), "Distinct operation indexes should be resolved in one call");
+        assertEquals(3, endpoint.rewrite(request).operations().size());
+        assertEquals(1, stub.resolved().size(), "Rewrite should not resolve indexes");
+    }
+
+    @Test
+    void testMsearchItemsAreResolvedBeforeRewrite() {
+        StubOmniaSDK stub = new StubOmniaSDK(indexId -> "commune_" + indexId.charAt(0))
+                .patterns(pattern -> pattern.equals("1*") ? List.of("123", "145") : List.of());
+        MsearchRequest request = MsearchRequest.of(m -> m
+                .searches(RequestItem.of(i -> i.header(h -> h.index("1*")).body(b -> b.size(1))))
+                .searches(RequestItem.of(i -> i.header(h -> h.index("456")).body(b -> b.size(1)))));
+        OmniaEndpoint<MsearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(MsearchRequest._ENDPOINT, stub);
+
+        assertEquals(Map.of(), endpoint.resolveIndexesAsync(request).toCompletableFuture().join());
+        assertEquals(List.of(List.of("123", "145", "456")), stub.resolved(), "Every item should be resolved in one call");
+        MsearchRequest rewritten = endpoint.rewrite(request);
+        assertEquals(1, stub.resolved().size(), "Rewrite should not resolve indexes");
+        assertEquals(List.of("commune_1"), rewritten.searches().get(0).header().index());
+        assertEquals(List.of("commune_4"), rewritten.searches().get(1).header().index());
+
+        MsearchRequest unmatched = MsearchRequest.of(m -> m
+                .searches(RequestItem.of(i -> i.header(h -> h.index("9*")).body(b -> b.size(1)))));
+        CompletionException e = assertThrows(CompletionException.class, () -> new OmniaEndpoint<>(MsearchRequest._ENDPOINT, stub)
+                .resolveIndexesAsync(unmatched).toCompletableFuture().join());
+        assertEquals(404, ((OpenSearchException) e.getCause()).status());
+    }
+
+    @Test
+    void testUnmatchedPatternIsNotFound() {
+        SearchRequest request = SearchRequest.of(s -> s.index("9*"));
+        OmniaEndpoint<SearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk);
+
+        OpenSearchException e = assertThrows(OpenSearchException.class, () -> endpoint.resolveIndexes(request));
+        assertEquals(404, e.status());
+    }
+
+    @Test
+    void testPatternWithoutRegistryIsNotFound() {
+        OmniaSDK unregistered = StubOmniaSDK.commune("commune_1");
+        SearchRequest request = SearchRequest.of(s -> s.index("1*"));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> new OmniaEndpoint<>(SearchRequest._ENDPOINT, unregistered)
+                .resolveIndexesAsync(request).toCompletableFuture().join());
+        assertEquals(404, ((OpenSearchException) e.getCause()).status());
+
+        SearchRequest mixed = SearchRequest.of(s -> s.index("1*", "456"));
+        assertEquals(Map.of("456", "commune_1"), new OmniaEndpoint<>(SearchRequest._ENDPOINT, unregistered).resolveIndexes(mixed));
+    }
+
+    @Test
+    void testPathReadingEveryIndexIsRejected() {
+        SearchRequest request = SearchRequest.of(s -> s);
+        OmniaEndpoint<SearchRequest, ?, ?> endpoint = new OmniaEndpoint<>(SearchRequest._ENDPOINT, sdk);
+
+        OpenSearchException e = assertThrows(OpenSearchException.class, () -> endpoint.resolveIndexes(request));
+        assertEquals(400, e.status());
+        assertThrows(OpenSearchException.class, () -> endpoint.getIndex("/_all/_search"));
+        assertThrows(OpenSearchException.class, () -> endpoint.getIndex("/_count"));
+        assertThrows(OpenSearchException.class, () -> endpoint.getIndex("/_msearch/template"));
+        assertEquals(List.of(), endpoint.getIndex("/_search/scroll"));
+        assertEquals(List.of(), endpoint.getIndex("/_msearch"));
+        assertEquals(List.of(), endpoint.getIndex("/_searchable"));
+    }
+}
@@ -9,6 +9,7 @@ import org.apache.http.HttpHost;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.opensearch.client.RestClient;
+import org.opensearch.client.opensearch.OpenSearchAsyncClient;
 import org.opensearch.client.opensearch.OpenSearchClient;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch.core.IndexRequest;
@@ -142,4 +143,15 @@ public class OmniaEndpointTest {
         assertEquals(1, response.hits().hits().size(), "Combined query should find one document");
     }
 
+    @Test
+    void testAsyncSearch() throws Exception {
+        OpenSearchAsyncClient asyncClient = new OpenSearchAsyncClient(openSearchClient._transport());
+        SearchRequest request = new SearchRequest.Builder()
+                .index("456")
+                .query(new Query.Builder().matchAll(m -> m).build())
+                .build();
+
+        SearchResponse<Object> response = asyncClient.search(request, Object.class).get();
+        assertEquals(1, response.hits().hits().size(), "Async search should find one document");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.omnia.transport;
+
+import com.omnia.common.config.Config;
+import com.omnia.sdk.OmniaSDK;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.IndexResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.opensearch.core.bulk.OperationType;
+import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.Transport;
+import org.opensearch.client.transport.TransportOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OmniaTransportTest {
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final List<Object> requests = new CopyOnWriteArrayList<>();
+
+    private final OmniaSDK sdk = StubOmniaSDK.commune("commune_1");
+
+    private final Transport delegate = new Transport() {
+        @Override
+        public <RequestT, ResponseT, ErrorT> ResponseT performRequest(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <RequestT, ResponseT, ErrorT> CompletableFuture<ResponseT> performRequestAsync(RequestT request, Endpoint<RequestT, ResponseT, ErrorT> endpoint, TransportOptions options) {
+            requests.add(request);
+            List<BulkResponseItem> items = new ArrayList<>();
+            // Operations are rewritten to communes, their content is not needed for the response
+            for (int n = 0; n < ((BulkRequest) request).operations().size(); n++) {
+                String id = String.valueOf(n + 1);
+                items.add(BulkResponseItem.of(i -> i.operationType(OperationType.Index)
+                        .index("commune_1").id(id).status(201).result("created")
+                        .version(1L).seqNo(1L).primaryTerm(1L)));
+            }
+            return CompletableFuture.completedFuture((ResponseT) BulkResponse.of(b -> b.errors(false).took(1).items(items)));
+        }
+
+        @Override
+        public JsonpMapper jsonpMapper() {
+            return mapper;
+        }
+
+        @Override
+        public TransportOptions options() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private OmniaTransport transport;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (transport != null) {
+            transport.close();
+        }
+    }
+
+    private static IndexRequest<Map<String, String>> index(String indexId, String id) {
+        return IndexRequest.of(i -> i.index(indexId).id(id).document(Map.of("title", "a")));
+    }
+
+    @Test
+    void testCoalescedWritesAreRateLimitedOnce() {
+        Config config = new Config();
+        config.setWriteCoalescing(true);
+        config.setWriteCoalescingMaxOperations(2);
+        config.setWriteCoalescingLingerMillis(60_000);
+        config.setRateLimiting(true);
+        config.setRateLimitWritesPerSecond(1);
+        transport = new OmniaTransport(delegate, sdk, config);
+
+        CompletableFuture<IndexResponse> noisy = transport.performRequestAsync(index("noisy", "1"), IndexRequest._ENDPOINT, null);
+        CompletableFuture<IndexResponse> quiet = transport.performRequestAsync(index("quiet", "2"), IndexRequest._ENDPOINT, null);
+
+        // The batch holds the only token of each index, it must not be charged again
+        assertEquals("noisy", noisy.join().index());
+        assertEquals("quiet", quiet.join().index());
+        assertEquals(1, requests.size());
+
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> transport.performRequestAsync(index("noisy", "3"), IndexRequest._ENDPOINT, null).join());
+        assertInstanceOf(TenantThrottledException.class, e.getCause());
+        assertEquals(1, requests.size(), "Throttled write should not be queued");
+    }
+
+    @Test
+    void testCoalescedWritesAreAdmittedAsOneRequest() {
+        Config config = new Config();
+        config.setWriteCoalescing(true);
+        config.setWriteCoalescingMaxOperations(3);
+        config.setWriteCoalescingLingerMillis(60_000);
+        config.setAdmissionControl(true);
+        config.setAdmissionInitialLimit(1);
+        config.setAdmissionMinLimit(1);
+        config.setAdmissionMaxLimit(1);
+        transport = new OmniaTransport(delegate, sdk, config);
+
+        // Writes waiting in the batch hold no admission slot, so the batch fills up at once
+        List<CompletableFuture<IndexResponse>> responses = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            responses.add(transport.performRequestAsync(index("123", String.valueOf(i)), IndexRequest._ENDPOINT, null));
+        }
+
+        for (CompletableFuture<IndexResponse> response : responses) {
+            assertEquals("123", response.orTimeout(5, TimeUnit.SECONDS).join().index());
+        }
+        assertEquals(1, requests.size());
+        assertEquals(3, ((BulkRequest) requests.get(0)).operations().size());
+        assertEquals(0, transport.admissionStats().get("commune_1").inFlight());
+    }
+}
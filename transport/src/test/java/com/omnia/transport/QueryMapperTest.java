@@ -6,6 +6,8 @@ import org.opensearch.client.opensearch._types.query_dsl.MatchQuery;
 import org.opensearch.client.opensearch._types.query_dsl.Query;
 import org.opensearch.client.opensearch._types.query_dsl.BoolQuery;
 import org.opensearch.client.opensearch._types.query_dsl.TermQuery;
+import org.opensearch.client.opensearch.core.GetRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -91,4 +93,33 @@ public class QueryMapperTest<RequestT, ResponseT, ErrorT> {
         assertEquals(1, resultMap.size());
         assertEquals("OpenSearch", resultMap.get("title"));
     }
+
+    @Test
+    void executeQuery_searchRequestTest() {
+        Query query = Query.of(q -> q.term(t -> t.field("title").value(FieldValue.of("OpenSearch"))));
+        SearchRequest request = SearchRequest.of(s -> s.index("logs").query(query));
+        assertSame(query, mapper.executeQuery(request));
+        assertNull(mapper.executeQuery(SearchRequest.of(s -> s.index("logs"))));
+    }
+
+    @Test
+    void executeQuery_noQueryTest() {
+        assertNull(mapper.executeQuery(GetRequest.of(g -> g.index("logs").id("1"))));
+        assertNull(mapper.executeQuery(null));
+    }
+
+    @Test
+    void updatePrivateFields_searchRequestTest() throws NoSuchFieldException, IllegalAccessException {
+        SearchRequest request = SearchRequest.of(s -> s.index("logs"));
+        Query query = Query.of(q -> q.matchAll(m -> m));
+        mapper.updatePrivateFields(request, query);
+        assertSame(query, request.query());
+    }
+
+    @Test
+    void updatePrivateFields_noQueryTest() {
+        GetRequest request = GetRequest.of(g -> g.index("logs").id("1"));
+        assertThrows(NoSuchFieldException.class,
+                () -> mapper.updatePrivateFields(request, Query.of(q -> q.matchAll(m -> m))));
+    }
 }
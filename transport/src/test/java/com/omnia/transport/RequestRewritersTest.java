@@ -0,0 +1,139 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.query_dsl.Query;
+import org.opensearch.client.opensearch.core.CountRequest;
+import org.opensearch.client.opensearch.core.GetRequest;
+import org.opensearch.client.opensearch.core.MgetRequest;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchTemplateRequest;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.opensearch.indices.GetIndexRequest;
+import org.opensearch.client.opensearch.indices.GetIndicesSettingsRequest;
+import org.opensearch.client.opensearch.indices.IndicesStatsRequest;
+import org.opensearch.client.opensearch.indices.PutMappingRequest;
+import org.opensearch.client.opensearch.indices.RefreshRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestRewritersTest {
+    private final OmniaSDK sdk = new StubOmniaSDK(indexId -> "commune_" + indexId);
+
+    private final OmniaSDK routingSdk = new StubOmniaSDK(indexId -> "commune_" + indexId).routing(indexId -> indexId);
+
+    private final Query userQuery = Query.of(q -> q.matchAll(m -> m));
+
+    @Test
+    void testSearchIsRebuilt() {
+        SearchRequest request = SearchRequest.of(s -> s.index("123").query(userQuery).size(5));
+        SearchRequest rewritten = RequestRewriters.rewrite(request, sdk, Map.of("123", "commune_123"));
+
+        assertNotSame(request, rewritten);
+        assertSame(userQuery, request.query(), "Original request must not be modified");
+        assertEquals(5, rewritten.size());
+        assertEquals(List.of(userQuery), rewritten.query().bool().must());
+        assertEquals("123", rewritten.query().bool().filter().get(0).term().value().stringValue());
+    }
+
+    @Test
+    void testCountWithoutQueryIsFiltered() {
+        CountRequest request = CountRequest.of(c -> c.index("123"));
+        CountRequest rewritten = RequestRewriters.rewrite(request, sdk, Map.of("123", "commune_123"));
+
+        assertNull(request.query());
+        assertEquals("123", rewritten.query().bool().filter().get(0).term().value().stringValue());
+    }
+
+    @Test
+    void testMsearchItemsAreRemapped() {
+        MsearchRequest request = MsearchRequest.of(m -> m
+                .searches(RequestItem.of(i -> i
+                        .header(h -> h.index("123"))
+                        .body(b -> b.query(userQuery).size(3))))
+                .searches(RequestItem.of(i -> i
+                        .header(h -> h.index("456"))
+                        .body(b -> b.query(userQuery)))));
+        MsearchRequest rewritten = RequestRewriters.rewrite(request, sdk, Map.of("123", "commune_123", "456", "commune_456"));
+
+        assertEquals(2, rewritten.searches().size());
+        RequestItem first = rewritten.searches().get(0);
+        assertEquals(List.of("commune_123"), first.header().index());
+        assertEquals(3, first.body().size());
+        assertEquals("123", first.body().query().bool().filter().get(0).term().value().stringValue());
+        assertEquals(List.of("commune_456"), rewritten.searches().get(1).header().index());
+        assertEquals(List.of("123"), request.searches().get(0).header().index());
+    }
+
+    @Test
+    void testPassThrough() {
+        GetRequest get = GetRequest.of(g -> g.index("123").id("1"));
+        assertSame(get, RequestRewriters.rewrite(get, sdk, Map.of("123", "commune_123")));
+
+        SearchRequest search = SearchRequest.of(s -> s.query(userQuery));
+        assertSame(search, RequestRewriters.rewrite(search, sdk, Map.of()));
+    }
+
+    @Test
+    void testTenantRouting() {
+        SearchRequest search = SearchRequest.of(s -> s.index("123", "456").query(userQuery));
+        String routing = RequestRewriters.rewrite(search, routingSdk,
+                Map.of("123", "commune_1", "456", "commune_1")).routing();
+        assertEquals(Set.of("123", "456"), Set.of(routing.split(",")), "Search should hit shards of both indexes");
+
+        GetRequest get = GetRequest.of(g -> g.index("123").id("1"));
+        assertEquals("123", RequestRewriters.rewrite(get, routingSdk, Map.of("123", "commune_123")).routing());
+
+        GetRequest routed = GetRequest.of(g -> g.index("123").id("1").routing("custom"));
+        assertSame(routed, RequestRewriters.rewrite(routed, routingSdk, Map.of("123", "commune_123")),
+                "Routing set by the caller must be kept");
+
+        MsearchRequest msearch = MsearchRequest.of(m -> m.searches(RequestItem.of(i -> i
+                .header(h -> h.index("456"))
+                .body(b -> b.query(userQuery)))));
+        assertEquals("456", RequestRewriters.rewrite(msearch, routingSdk, Map.of("456", "commune_456"))
+                .searches().get(0).header().routing());
+    }
+
+    @Test
+    void testDocumentReadingRequestIsRejected() {
+        MgetRequest mget = MgetRequest.of(m -> m.index("123").ids("1"));
+        OpenSearchException e = assertThrows(OpenSearchException.class,
+                () -> RequestRewriters.rewrite(mget, sdk, Map.of("123", "commune_123")));
+        assertEquals(400, e.status());
+
+        SearchTemplateRequest template = SearchTemplateRequest.of(t -> t.index("123").id("template"));
+        assertThrows(OpenSearchException.class, () -> RequestRewriters.rewrite(template, sdk, Map.of("123", "commune_123")));
+    }
+
+    @Test
+    void testIndexLevelRequestPassesThrough() {
+        Map<String, String> communes = Map.of("123", "commune_123");
+        RefreshRequest refresh = RefreshRequest.of(r -> r.index("123"));
+        assertSame(refresh, RequestRewriters.rewrite(refresh, sdk, communes));
+
+        PutMappingRequest putMapping = PutMappingRequest.of(p -> p.index("123").properties("title", t -> t.text(x -> x)));
+        assertSame(putMapping, RequestRewriters.rewrite(putMapping, sdk, communes));
+        GetIndexRequest getIndex = GetIndexRequest.of(g -> g.index("123"));
+        assertSame(getIndex, RequestRewriters.rewrite(getIndex, sdk, communes));
+        GetIndicesSettingsRequest getSettings = GetIndicesSettingsRequest.of(g -> g.index("123"));
+        assertSame(getSettings, RequestRewriters.rewrite(getSettings, sdk, communes));
+        IndicesStatsRequest stats = IndicesStatsRequest.of(i -> i.index("123"));
+        assertSame(stats, RequestRewriters.rewrite(stats, sdk, communes));
+    }
+
+    @Test
+    void testMsearchItemWithoutIndexIsRejected() {
+        MsearchRequest request = MsearchRequest.of(m -> m.searches(RequestItem.of(i -> i
+                .header(h -> h)
+                .body(b -> b.query(userQuery)))));
+
+        assertThrows(OpenSearchException.class, () -> RequestRewriters.rewrite(request, sdk, Map.of()));
+    }
+}
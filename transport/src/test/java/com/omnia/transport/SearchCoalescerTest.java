@@ -0,0 +1,128 @@
+package com.omnia.transport;
+
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.json.JsonData;
+import org.opensearch.client.json.JsonpDeserializer;
+import org.opensearch.client.json.JsonpMapper;
+import org.opensearch.client.json.jackson.JacksonJsonpMapper;
+import org.opensearch.client.opensearch._types.ErrorResponse;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch.core.MsearchRequest;
+import org.opensearch.client.opensearch.core.MsearchResponse;
+import org.opensearch.client.opensearch.core.SearchRequest;
+import org.opensearch.client.opensearch.core.SearchResponse;
+import org.opensearch.client.opensearch.core.msearch.MultiSearchResponseItem;
+import org.opensearch.client.opensearch.core.msearch.RequestItem;
+import org.opensearch.client.opensearch.core.search.TotalHitsRelation;
+import org.opensearch.client.transport.Endpoint;
+import org.opensearch.client.transport.JsonEndpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchCoalescerTest {
+    private static final JsonpDeserializer<SearchResponse<Map<String, Object>>> DESERIALIZER =
+            ((JsonEndpoint<SearchRequest, SearchResponse<Map<String, Object>>, ?>) SearchRequest.createSearchEndpoint(
+                    JsonpDeserializer.stringMapDeserializer(JsonpDeserializer.of(Object.class)))).responseDeserializer();
+
+    private final JsonpMapper mapper = new JacksonJsonpMapper();
+    private final List<MsearchRequest> sent = new CopyOnWriteArrayList<>();
+
+    private CompletableFuture<List<Runnable>> respond(String commune, MsearchRequest request,
+                                                      Endpoint<MsearchRequest, List<Runnable>, ErrorResponse> endpoint) {
+        sent.add(request);
+        List<MultiSearchResponseItem<JsonData>> items = new ArrayList<>();
+        for (RequestItem item : request.searches()) {
+            String index = item.header().index().get(0);
+            if (index.equals("missing")) {
+                items.add(MultiSearchResponseItem.of(i -> i.failure(f -> f.status(404)
+                        .error(e -> e.type("index_not_found_exception").reason("no such index")))));
+                continue;
+            }
+            items.add(MultiSearchResponseItem.of(i -> i.result(r -> r.took(1).timedOut(false).status(200)
+                    .shards(s -> s.total(1).successful(1).failed(0))
+                    .hits(h -> h.total(t -> t.value(1).relation(TotalHitsRelation.Eq))
+                            .hits(hit -> hit.index("commune_1").id(index).source(JsonData.of(Map.of("tenant", index))))))));
+        }
+        // The response is parsed from its JSON, as the transport would
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(out)) {
+            MsearchResponse.<JsonData>of(b -> b.took(1).responses(items)).serialize(generator, mapper);
+        }
+        JsonParser parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(out.toByteArray()));
+        return CompletableFuture.completedFuture(((JsonEndpoint<MsearchRequest, List<Runnable>, ErrorResponse>) endpoint)
+                .responseDeserializer().deserialize(parser, mapper));
+    }
+
+    @Test
+    void testFullBatchIsSentAsOneMsearch() {
+        try (SearchCoalescer coalescer = new SearchCoalescer(this::respond, 2, 60_000)) {
+            CompletableFuture<SearchResponse<Map<String, Object>>> first = coalescer.submit("commune_1", search("123"), DESERIALIZER);
+            assertTrue(sent.isEmpty(), "Batch should wait until it is full");
+            CompletableFuture<SearchResponse<Map<String, Object>>> second = coalescer.submit("commune_1", search("456"), DESERIALIZER);
+
+            assertEquals(1, sent.size());
+            List<RequestItem> searches = sent.get(0).searches();
+            assertEquals(List.of("123"), searches.get(0).header().index(), "Items keep their logical index");
+            assertEquals(List.of("456"), searches.get(1).header().index());
+            assertEquals(5, searches.get(1).body().size());
+            assertEquals("123", first.join().hits().hits().get(0).source().get("tenant"));
+            assertEquals("456", second.join().hits().hits().get(0).source().get("tenant"));
+        }
+    }
+
+    @Test
+    void testBatchesAreSeparatedByCommune() {
+        try (SearchCoalescer coalescer = new SearchCoalescer(this::respond, 2, 60_000)) {
+            coalescer.submit("commune_1", search("123"), DESERIALIZER);
+            coalescer.submit("commune_2", search("456"), DESERIALIZER);
+            assertTrue(sent.isEmpty());
+        }
+        assertEquals(2, sent.size(), "Close should send pending batches");
+    }
+
+    @Test
+    void testBatchIsSentAfterLinger() throws Exception {
+        try (SearchCoalescer coalescer = new SearchCoalescer(this::respond, 100, 10)) {
+            CompletableFuture<SearchResponse<Map<String, Object>>> response = coalescer.submit("commune_1", search("123"), DESERIALIZER);
+            assertEquals(1, response.get(5, TimeUnit.SECONDS).hits().total().value());
+            assertEquals(1, sent.size());
+        }
+    }
+
+    @Test
+    void testFailedItemCompletesExceptionally() {
+        try (SearchCoalescer coalescer = new SearchCoalescer(this::respond, 2, 60_000)) {
+            CompletableFuture<SearchResponse<Map<String, Object>>> good = coalescer.submit("commune_1", search("123"), DESERIALIZER);
+            CompletableFuture<SearchResponse<Map<String, Object>>> bad = coalescer.submit("commune_1", search("missing"), DESERIALIZER);
+
+            assertEquals("123", good.join().hits().hits().get(0).id());
+            CompletionException e = assertThrows(CompletionException.class, bad::join);
+            OpenSearchException cause = assertInstanceOf(OpenSearchException.class, e.getCause());
+            assertEquals("index_not_found_exception", cause.error().type());
+        }
+    }
+
+    @Test
+    void testUnsupportedParametersPreventCoalescing() {
+        assertTrue(SearchCoalescer.isCoalescible(search("123")));
+        assertFalse(SearchCoalescer.isCoalescible(SearchRequest.of(s -> s.index("123", "456"))));
+        assertFalse(SearchCoalescer.isCoalescible(SearchRequest.of(s -> s.index("123").scroll(t -> t.time("1m")))));
+        assertFalse(SearchCoalescer.isCoalescible(SearchRequest.of(s -> s.index("123").storedFields("title"))));
+    }
+
+    private static SearchRequest search(String indexId) {
+        return SearchRequest.of(s -> s.index(indexId).size(5).query(q -> q.matchAll(m -> m)));
+    }
+}
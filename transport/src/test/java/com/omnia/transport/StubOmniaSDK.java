@@ -0,0 +1,87 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * In-memory SDK of the transport tests, indexes are resolved by a function instead of the mapping store
+ */
+class StubOmniaSDK implements OmniaSDK {
+    private final Function<String, String> communes;
+    private final List<List<String>> resolved = new CopyOnWriteArrayList<>();
+    private Function<String, String> routing;
+    private Function<String, List<String>> patterns;
+    private Map<String, String> configValues = Map.of();
+
+    /**
+     * @param communes Resolves commune of an index, null if the index does not exist
+     */
+    StubOmniaSDK(Function<String, String> communes) {
+        this.communes = communes;
+    }
+
+    /**
+     * @param commune Commune of every index
+     */
+    static StubOmniaSDK commune(String commune) {
+        return new StubOmniaSDK(indexId -> commune);
+    }
+
+    StubOmniaSDK routing(Function<String, String> routing) {
+        this.routing = routing;
+        return this;
+    }
+
+    StubOmniaSDK patterns(Function<String, List<String>> patterns) {
+        this.patterns = patterns;
+        return this;
+    }
+
+    StubOmniaSDK configValues(Map<String, String> configValues) {
+        this.configValues = configValues;
+        return this;
+    }
+
+    /**
+     * Returns indexes of every batch resolution, in call order
+     */
+    List<List<String>> resolved() {
+        return resolved;
+    }
+
+    @Override
+    public String transformIndexId(String indexId) {
+        return communes.apply(indexId);
+    }
+
+    @Override
+    public Map<String, String> transformIndexIds(Collection<String> indexIds) {
+        resolved.add(List.copyOf(indexIds));
+        return OmniaSDK.super.transformIndexIds(indexIds);
+    }
+
+    @Override
+    public String getFilterField() {
+        return "real_index";
+    }
+
+    @Override
+    public String getRouting(String indexId) {
+        return routing != null ? routing.apply(indexId) : OmniaSDK.super.getRouting(indexId);
+    }
+
+    @Override
+    public List<String> matchIndexes(String pattern) {
+        return patterns != null ? patterns.apply(pattern) : OmniaSDK.super.matchIndexes(pattern);
+    }
+
+    @Override
+    public Map<String, String> loadConfigValues(String prefix) {
+        return configValues;
+    }
+}
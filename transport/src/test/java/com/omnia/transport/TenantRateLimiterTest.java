@@ -0,0 +1,103 @@
+package com.omnia.transport;
+
+import com.omnia.sdk.OmniaSDK;
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.SearchRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TenantRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static OmniaSDK sdk(Map<String, String> configTable) {
+        return new StubOmniaSDK(indexId -> "commune_" + indexId.charAt(0)).configValues(configTable);
+    }
+
+    @Test
+    void testBurstIsThrottledAndRefilled() {
+        TenantRateLimiter limiter = new TenantRateLimiter(sdk(Map.of()), 10, 10, 1, 1000, 60);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("123", false, now));
+        }
+        assertFalse(limiter.tryAcquire("123", false, now));
+        assertTrue(limiter.tryAcquire("123", true, now), "Writes should have their own budget");
+        assertTrue(limiter.tryAcquire("456", false, now), "Indexes should have their own budget");
+
+        assertTrue(limiter.tryAcquire("123", false, now + SECOND / 10), "A token should be back after an interval");
+        assertFalse(limiter.tryAcquire("123", false, now + SECOND / 10));
+        limiter.close();
+    }
+
+    @Test
+    void testLimitsAreReadFromConfigTable() {
+        TenantRateLimiter limiter = new TenantRateLimiter(sdk(Map.of(
+                "rate_limit.read", "0",
+                "rate_limit.write.noisy", "1",
+                "rate_limit.write.broken", "fast")), 10, 10, 1, 1000, 60);
+        limiter.refresh();
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire("noisy", false, now), "Reads should be unlimited");
+        }
+        assertTrue(limiter.tryAcquire("noisy", true, now));
+        assertFalse(limiter.tryAcquire("noisy", true, now));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("broken", true, now), "Invalid limits should fall back to the default");
+        }
+        assertFalse(limiter.tryAcquire("broken", true, now));
+        assertEquals(2, limiter.size(), "Unlimited reads should not keep buckets");
+        limiter.close();
+    }
+
+    @Test
+    void testThrottledRequestFailsWithDistinctError() {
+        TenantRateLimiter limiter = new TenantRateLimiter(sdk(Map.of()), 1, 1, 1, 1000, 60);
+        BulkRequest bulk = BulkRequest.of(b -> b
+                .operations(o -> o.index(i -> i.index("123").id("1").document(Map.of())))
+                .operations(o -> o.delete(d -> d.index("456").id("2"))));
+
+        limiter.acquire(bulk, List.of());
+        TenantThrottledException e = assertThrows(TenantThrottledException.class,
+                () -> limiter.acquire(IndexRequest.of(i -> i.index("456").id("3").document(Map.of())), List.of("456")));
+        assertEquals(429, e.status());
+        assertEquals(TenantThrottledException.TYPE, e.error().type());
+        assertEquals("456", e.getIndexId());
+        assertTrue(e.isWrite());
+
+        limiter.acquire(SearchRequest.of(s -> s.index("456")), List.of("456"));
+        limiter.close();
+    }
+
+    @Test
+    void testThrottledRequestDoesNotChargeOtherIndexes() {
+        TenantRateLimiter limiter = new TenantRateLimiter(sdk(Map.of()), 1, 1, 1, 1000, 60);
+        limiter.acquire(SearchRequest.of(s -> s.index("456")), List.of("456"));
+
+        assertThrows(TenantThrottledException.class,
+                () -> limiter.acquire(SearchRequest.of(s -> s.index("123", "456")), List.of("123", "456")));
+        limiter.acquire(SearchRequest.of(s -> s.index("123")), List.of("123"));
+        limiter.close();
+    }
+
+    @Test
+    void testBucketsAreBounded() {
+        TenantRateLimiter limiter = new TenantRateLimiter(sdk(Map.of()), 10, 10, 1, 640, 60);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 100_000; i++) {
+            limiter.tryAcquire("tenant-" + i, false, now);
+        }
+        assertTrue(limiter.size() <= 640, "Buckets should be evicted, kept " + limiter.size());
+        assertTrue(limiter.size() >= 64, "Each stripe should keep its latest buckets");
+        limiter.close();
+    }
+}
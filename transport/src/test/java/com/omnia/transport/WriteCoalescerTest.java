@@ -0,0 +1,144 @@
+package com.omnia.transport;
+
+import org.junit.jupiter.api.Test;
+import org.opensearch.client.opensearch._types.OpenSearchException;
+import org.opensearch.client.opensearch._types.Refresh;
+import org.opensearch.client.opensearch._types.Result;
+import org.opensearch.client.opensearch.core.BulkRequest;
+import org.opensearch.client.opensearch.core.BulkResponse;
+import org.opensearch.client.opensearch.core.DeleteRequest;
+import org.opensearch.client.opensearch.core.DeleteResponse;
+import org.opensearch.client.opensearch.core.IndexRequest;
+import org.opensearch.client.opensearch.core.IndexResponse;
+import org.opensearch.client.opensearch.core.bulk.BulkOperation;
+import org.opensearch.client.opensearch.core.bulk.BulkResponseItem;
+import org.opensearch.client.opensearch.core.bulk.OperationType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteCoalescerTest {
+    private final List<BulkRequest> sent = new CopyOnWriteArrayList<>();
+
+    private CompletableFuture<BulkResponse> respond(String commune, BulkRequest request) {
+        sent.add(request);
+        List<BulkResponseItem> items = new ArrayList<>();
+        for (BulkOperation operation : request.operations()) {
+            if (operation.isDelete()) {
+                String id = operation.delete().id();
+                items.add(BulkResponseItem.of(i -> i.operationType(OperationType.Delete)
+                        .index(operation.delete().index()).id(id).status(404).result("not_found").version(1L)));
+            } else if ("bad".equals(operation.index().id())) {
+                items.add(BulkResponseItem.of(i -> i.operationType(OperationType.Index)
+                        .index(operation.index().index()).id("bad").status(400)
+                        .error(e -> e.type("mapper_parsing_exception").reason("failed to parse"))));
+            } else {
+                String id = operation.index().id();
+                items.add(BulkResponseItem.of(i -> i.operationType(OperationType.Index)
+                        .index(operation.index().index()).id(id).status(201).result("created")
+                        .version(1L).seqNo(Long.parseLong(id)).primaryTerm(1L)));
+            }
+        }
+        return CompletableFuture.completedFuture(BulkResponse.of(b -> b.errors(false).took(1).items(items)));
+    }
+
+    @Test
+    void testFullBatchIsSentAsOneBulk() {
+        try (WriteCoalescer coalescer = new WriteCoalescer(this::respond, 3, Long.MAX_VALUE, 60_000)) {
+            CompletableFuture<Object> first = coalescer.submit("commune_1", index("123", "1"));
+            CompletableFuture<Object> second = coalescer.submit("commune_1", index("456", "2"));
+            assertTrue(sent.isEmpty(), "Batch should wait until it is full");
+            CompletableFuture<Object> third = coalescer.submit("commune_1",
+                    DeleteRequest.of(d -> d.index("123").id("3")));
+
+            assertEquals(1, sent.size());
+            assertEquals(3, sent.get(0).operations().size());
+            IndexResponse firstResponse = (IndexResponse) first.join();
+            assertEquals("1", firstResponse.id());
+            assertEquals(Result.Created, firstResponse.result());
+            assertEquals(1L, firstResponse.seqNo());
+            assertEquals("2", ((IndexResponse) second.join()).id());
+            assertEquals(Result.NotFound, ((DeleteResponse) third.join()).result());
+        }
+    }
+
+    @Test
+    void testBatchesAreSeparatedByCommune() {
+        try (WriteCoalescer coalescer = new WriteCoalescer(this::respond, 2, Long.MAX_VALUE, 60_000)) {
+            coalescer.submit("commune_1", index("123", "1"));
+            coalescer.submit("commune_2", index("456", "2"));
+            assertTrue(sent.isEmpty());
+            coalescer.submit("commune_1", index("123", "3"));
+            assertEquals(1, sent.size());
+            assertEquals(List.of("1", "3"), sent.get(0).operations().stream().map(o -> o.index().id()).toList());
+        }
+    }
+
+    @Test
+    void testBatchIsSentAfterLinger() throws Exception {
+        try (WriteCoalescer coalescer = new WriteCoalescer(this::respond, 1000, Long.MAX_VALUE, 10)) {
+            CompletableFuture<Object> response = coalescer.submit("commune_1", index("123", "1"));
+            assertEquals("1", ((IndexResponse) response.get(5, TimeUnit.SECONDS)).id());
+            assertEquals(1, sent.size());
+        }
+    }
+
+    @Test
+    void testByteLimitTriggersBulk() {
+        try (WriteCoalescer coalescer = new WriteCoalescer(this::respond, 1000, 10, 60_000)) {
+            coalescer.submit("commune_1", index("123", "1"));
+            assertEquals(1, sent.size(), "Document is larger than the byte limit");
+        }
+    }
+
+    @Test
+    void testDocumentSizeIsEstimatedWithoutSerializing() {
+        // {"title":"a"} and ["a","b"] are 13 and 9 bytes
+        assertEquals(14, WriteCoalescer.estimateJsonBytes(Map.of("title", "a")));
+        assertEquals(10, WriteCoalescer.estimateJsonBytes(List.of("a", "b")));
+        assertEquals(WriteCoalescer.OBJECT_DOCUMENT_BYTES, WriteCoalescer.estimateJsonBytes(new Object()));
+    }
+
+    @Test
+    void testFailedItemCompletesExceptionally() {
+        try (WriteCoalescer coalescer = new WriteCoalescer(this::respond, 2, Long.MAX_VALUE, 60_000)) {
+            CompletableFuture<Object> good = coalescer.submit("commune_1", index("123", "1"));
+            CompletableFuture<Object> bad = coalescer.submit("commune_1", index("123", "bad"));
+
+            assertEquals("1", ((IndexResponse) good.join()).id());
+            CompletionException e = assertThrows(CompletionException.class, bad::join);
+            OpenSearchException cause = assertInstanceOf(OpenSearchException.class, e.getCause());
+            assertEquals("mapper_parsing_exception", cause.error().type());
+            assertEquals(400, cause.status());
+        }
+    }
+
+    @Test
+    void testCloseSendsPendingWrites() {
+        WriteCoalescer coalescer = new WriteCoalescer(this::respond, 1000, Long.MAX_VALUE, 60_000);
+        CompletableFuture<Object> response = coalescer.submit("commune_1", index("123", "1"));
+        coalescer.close();
+
+        assertTrue(response.isDone());
+        assertThrows(IllegalStateException.class, () -> coalescer.submit("commune_1", index("123", "2")));
+    }
+
+    @Test
+    void testRequestParametersPreventCoalescing() {
+        assertTrue(WriteCoalescer.isCoalescible(index("123", "1")));
+        assertFalse(WriteCoalescer.isCoalescible(IndexRequest.of(i -> i.index("123").id("1")
+                .refresh(Refresh.True).document(Map.of()))));
+        assertFalse(WriteCoalescer.isCoalescible(BulkRequest.of(b -> b.operations(List.of()))));
+    }
+
+    private static IndexRequest<Map<String, String>> index(String indexId, String id) {
+        return IndexRequest.of(i -> i.index(indexId).id(id).document(Map.of("title", "document " + id)));
+    }
+}